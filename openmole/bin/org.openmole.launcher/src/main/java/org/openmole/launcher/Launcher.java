@@ -6,10 +6,23 @@ import org.osgi.framework.BundleContext;
 import org.osgi.framework.Constants;
 import org.osgi.framework.launch.Framework;
 import org.osgi.framework.launch.FrameworkFactory;
+import org.osgi.framework.wiring.FrameworkWiring;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.lang.reflect.Method;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.jar.JarFile;
 
 /**
  * Created by Romain Reuillon on 31/03/16.
@@ -29,14 +42,23 @@ import java.util.*;
  */
 public class Launcher {
 
+    /**
+     * Version of the layout of the shared OSGi storages, part of their key so that a new layout never reuses an old storage.
+     */
+    private static final String CACHE_FORMAT = "1";
+    private static final String CACHE_READY = "ready";
+    private static final String CACHED_LOCATION = "openmole:";
+
     public static void main(String[] args) {
 
         //FIXME: Use options when OpenMOLE will enforce java 8
         File directory = null;
         String run = null;
         String osgiDirectory = null;
+        File osgiCache = null;
         List<String> priority = new LinkedList<String>();
         Boolean osgiLockingNone = false;
+        boolean debug = false;
 
         String[] forwardAgs = new String[0];
 
@@ -57,6 +79,11 @@ public class Launcher {
                 osgiDirectory = args[i];
                 i++;
                 continue;
+            } else if(args[i].contentEquals("--osgi-cache")) {
+                i++;
+                osgiCache = new File(args[i]);
+                i++;
+                continue;
             } else if(args[i].contentEquals("--priority")) {
                 i++;
                 priority.add(args[i]);
@@ -66,6 +93,10 @@ public class Launcher {
                 i++;
                 osgiLockingNone = true;
                 continue;
+            } else if(args[i].contentEquals("--debug")) {
+                i++;
+                debug = true;
+                continue;
             } else if(args[i].contentEquals("--")) {
                 i++;
                 forwardAgs = Arrays.copyOfRange(args, i, args.length);
@@ -76,6 +107,10 @@ public class Launcher {
             }
         }
 
+        // --debug is also an option of the launched applications
+        if(Arrays.asList(forwardAgs).contains("--debug")) debug = true;
+        Timer timer = new Timer(debug);
+
         FrameworkFactory frameworkFactory = ServiceLoader.load(FrameworkFactory.class).iterator().next();
 
         Map<String, String> osgiConfig = new HashMap<String, String>();
@@ -102,6 +137,21 @@ public class Launcher {
         osgiConfig.put(Constants.FRAMEWORK_EXECUTIONENVIRONMENT, executionEnvironments.toString() + "CDC-1.1/Foundation-1.1,CDC-1.0/Foundation-1.0,J2ME,OSGi/Minimum-1.1,OSGi/Minimum-1.0");
         if(osgiDirectory !=  null) osgiConfig.put(Constants.FRAMEWORK_STORAGE, osgiDirectory);
 
+        // The bundles are installed and resolved once in a storage shared by the runtimes using the same plugins, the
+        // framework reads it as the parent of its own storage and only writes to its own storage
+        File sharedStorage = null;
+        if(osgiCache != null && directory != null && directory.exists()) {
+            try {
+                sharedStorage = sharedStorage(frameworkFactory, osgiConfig, directory, osgiCache);
+                timer.phase("shared storage " + sharedStorage);
+                osgiConfig.put("osgi.configuration.cascaded", "true");
+                osgiConfig.put("osgi.sharedConfiguration.area", sharedStorage.toURI().toString());
+            } catch(Throwable e) {
+                System.err.println("Unable to use the OSGi cache " + osgiCache + ", the bundles are installed from scratch: " + e);
+                sharedStorage = null;
+            }
+        }
+
         Framework framework = frameworkFactory.newFramework(osgiConfig);
 
 
@@ -113,16 +163,16 @@ public class Launcher {
             if(!directory.exists()) throw new RuntimeException("Plugin directory does not exist");
 
             framework.init();
+            timer.phase("framework init");
 
             BundleContext context = framework.getBundleContext();
 
-            List<Bundle> bundles = new LinkedList<>();
+            Map<String, Bundle> classIndex = new HashMap<String, Bundle>();
+            List<Bundle> bundles = installBundles(context, directory.listFiles(), sharedStorage != null, Collections.singletonList(run), classIndex);
+            timer.phase("install " + bundles.size() + " bundles");
 
-            for(File f: directory.listFiles()) {
-                Bundle b = context.installBundle(f.toURI().toString());
-                if(b.getSymbolicName() == null) throw new RuntimeException("Bundle " + f + " has no symbolic name");
-                bundles.add(b);
-            }
+            framework.adapt(FrameworkWiring.class).resolveBundles(bundles);
+            timer.phase("resolve");
 
             for(String p: priority) {
                 for(Bundle b: bundles) {
@@ -135,17 +185,23 @@ public class Launcher {
             for(Bundle b: bundles) {
                 b.start();
             }
+            timer.phase("start");
 
             Class main = null;
 
-            for(Bundle b: bundles) {
-                try {
-                    Class c = b.loadClass(run);
-                    main = c;
-                } catch(Exception ignore) {}
+            if(classIndex.containsKey(run)) main = classIndex.get(run).loadClass(run);
+            else {
+                // the class is not at the root of a jar, for instance in a jar of a bundle class path
+                for(Bundle b: bundles) {
+                    try {
+                        Class c = b.loadClass(run);
+                        main = c;
+                    } catch(Exception ignore) {}
+                }
             }
 
             if(main == null) throw new RuntimeException("Class " + run + " has not been found");
+            timer.phase("load " + run);
 
             Method runMethod = main.getDeclaredMethod("run", String[].class);
             if(!java.lang.reflect.Modifier.isStatic(runMethod.getModifiers())) throw new RuntimeException("Run method should be static");
@@ -162,5 +218,161 @@ public class Launcher {
         System.exit(ret);
     }
 
+    /**
+     * Install a bundle. The location of a bundle of the shared storage does not depend on the path of the plugin
+     * directory, an installed bundle is returned as is by the framework without reading the jar.
+     */
+    private static Bundle installBundle(BundleContext context, File f, boolean cached) throws Exception {
+        if(cached) return context.installBundle(CACHED_LOCATION + f.getName(), new FileInputStream(f));
+        else return context.installBundle(f.toURI().toString());
+    }
+
+    /**
+     * Install the bundles concurrently on a small pool, jars are copied and their manifests parsed in parallel by the
+     * framework. The jars are also looked up for the given classes, so that a class is loaded from the bundle containing
+     * it instead of probing all the bundles: classIndex maps a class to the first bundle containing it.
+     *
+     * @return the bundles, in the order of the files
+     */
+    private static List<Bundle> installBundles(BundleContext context, File[] files, boolean cached, Collection<String> classes, Map<String, Bundle> classIndex) throws Exception {
+        int threads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "bundle installer");
+            t.setDaemon(true);
+            return t;
+        });
+
+        try {
+            List<Future<InstalledBundle>> installs = new ArrayList<>();
+
+            for(File f: files) {
+                installs.add(pool.submit(() -> {
+                    Bundle b = installBundle(context, f, cached);
+                    if(b.getSymbolicName() == null) throw new RuntimeException("Bundle " + f + " has no symbolic name");
+
+                    List<String> contained = new ArrayList<>();
+                    if(!classes.isEmpty()) {
+                        try(JarFile jar = new JarFile(f)) {
+                            for(String c: classes) {
+                                if(jar.getEntry(c.replace('.', '/') + ".class") != null) contained.add(c);
+                            }
+                        }
+                    }
+
+                    return new InstalledBundle(b, contained);
+                }));
+            }
+
+            List<Bundle> bundles = new ArrayList<>();
+
+            for(Future<InstalledBundle> install: installs) {
+                InstalledBundle installed;
+                try {
+                    installed = install.get();
+                } catch(ExecutionException e) {
+                    if(e.getCause() instanceof Exception) throw (Exception) e.getCause();
+                    else throw e;
+                }
+
+                bundles.add(installed.bundle);
+                for(String c: installed.classes) classIndex.putIfAbsent(c, installed.bundle);
+            }
+
+            return bundles;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static class InstalledBundle {
+        final Bundle bundle;
+        final List<String> classes;
+
+        InstalledBundle(Bundle bundle, List<String> classes) {
+            this.bundle = bundle;
+            this.classes = classes;
+        }
+    }
+
+    /**
+     * Print the duration of the start-up phases on the standard error in debug mode.
+     */
+    private static class Timer {
+        final boolean enabled;
+        final long begin = System.nanoTime();
+        long last = begin;
+
+        Timer(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        void phase(String name) {
+            if(!enabled) return;
+            long now = System.nanoTime();
+            System.err.println("Launcher: " + name + " " + (now - last) / 1000000 + " ms (total " + (now - begin) / 1000000 + " ms)");
+            last = now;
+        }
+    }
+
+    /**
+     * Get the shared storage of a plugin directory in the cache, it is initialised by installing and resolving the
+     * bundles the first time. The initialisation holds a lock on the cache so that concurrent runtimes wait for it
+     * instead of initialising the same storage, and the storage is only used once it is marked as ready.
+     */
+    private static File sharedStorage(FrameworkFactory frameworkFactory, Map<String, String> osgiConfig, File plugins, File cache) throws Exception {
+        File storage = new File(cache, pluginsKey(plugins));
+        File ready = new File(storage, CACHE_READY);
+
+        if(ready.exists()) return storage;
+
+        cache.mkdirs();
+
+        try(FileChannel channel = FileChannel.open(new File(cache, storage.getName() + ".lock").toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            FileLock lock = channel.lock();
+            try {
+                // initialised by another runtime while waiting for the lock
+                if(ready.exists()) return storage;
+
+                Map<String, String> config = new HashMap<String, String>(osgiConfig);
+                config.put(Constants.FRAMEWORK_STORAGE, storage.getAbsolutePath());
+                config.put(Constants.FRAMEWORK_STORAGE_CLEAN, Constants.FRAMEWORK_STORAGE_CLEAN_ONFIRSTINIT);
+
+                Framework framework = frameworkFactory.newFramework(config);
+                framework.init();
+
+                List<Bundle> bundles = installBundles(framework.getBundleContext(), plugins.listFiles(), true, Collections.<String>emptyList(), new HashMap<String, Bundle>());
+
+                framework.adapt(FrameworkWiring.class).resolveBundles(bundles);
+                framework.stop();
+                framework.waitForStop(0);
+
+                Files.createFile(ready.toPath());
+            } finally {
+                lock.release();
+            }
+        }
+
+        return storage;
+    }
+
+    /**
+     * Key of the plugins in the cache, from the name, size and modification time of the jars and the version of java.
+     */
+    private static String pluginsKey(File plugins) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-1");
+        digest.update((CACHE_FORMAT + "\n" + System.getProperty("java.specification.version") + "\n").getBytes(StandardCharsets.UTF_8));
+
+        File[] files = plugins.listFiles();
+        Arrays.sort(files);
+
+        for(File f: files) {
+            digest.update((f.getName() + ":" + f.length() + ":" + f.lastModified() + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+
+        StringBuilder key = new StringBuilder();
+        for(byte b: digest.digest()) key.append(String.format("%02x", b));
+        return key.toString();
+    }
+
 
 }
@@ -68,16 +68,47 @@ if [ -n "$OM_LOCAL" ]; then
   export LANG=$OM_LOCAL
 fi
 
+# Reuse the bundles installed by the previous runtimes of the node, when a shared cache directory is set
+if [ -n "${OPENMOLE_OSGI_CACHE}" ]; then mkdir -p "${OPENMOLE_OSGI_CACHE}"; fi
+
+# Class data sharing: when a directory is set, the first runtime of a node dumps the classes it has loaded (JDK,
+# launcher and OSGi framework) at exit and the next runtimes map this archive instead of loading them again. The
+# archive is specific to the JVM and the launcher jars, the JVM ignores an archive which does not match and starts
+# cold. Dynamic archives need Java 13 or later, older JVMs ignore the options.
+# The archive records the class path, so it only helps when the runtimes of the node run from the same installation
+# directory, as with a shared storage on ssh and cluster environments. When the runtime is extracted in a directory of
+# its own for each job, as on EGI, the class path differs and the archive is always rejected.
+CDS_DUMP=""
+CDS_OPTION=""
+if [ -n "${OPENMOLE_CDS_DIRECTORY}" ]; then
+  mkdir -p "${OPENMOLE_CDS_DIRECTORY}"
+  CDS_KEY=`(java -version 2>&1; ls -l "${LOCATION}/launcher/") | cksum | cut -d' ' -f1`
+  CDS_ARCHIVE="${OPENMOLE_CDS_DIRECTORY}/runtime-${CDS_KEY}.jsa"
+  FLAG="$FLAG -XX:+IgnoreUnrecognizedVMOptions"
+  if [ -f "${CDS_ARCHIVE}" ]; then
+    FLAG="$FLAG -Xshare:auto"
+    CDS_OPTION="-XX:SharedArchiveFile=${CDS_ARCHIVE}"
+  else
+    # dumped in a file of its own, several runtimes of the node may start at the same time
+    CDS_DUMP="${CDS_ARCHIVE}.$$"
+    CDS_OPTION="-XX:ArchiveClassesAtExit=${CDS_DUMP}"
+  fi
+fi
+
 ## Just to be sure
 export _JAVA_OPTIONS="-Duser.home=\"${FULL_TMPDIR}\" -Djava.io.tmpdir=\"${FULL_TMPDIR}\""
 
-java -Djava.io.tmpdir="${FULL_TMPDIR}" -Duser.home="${FULL_TMPDIR}" -Dsun.jnu.encoding=UTF-8 -Dfile.encoding=UTF-8 -Duser.country=US -Duser.language=en -Xss2M -Xms64m -Xmx${MEMORY} -Dosgi.configuration.area="${OSGI_CONFIGDIR}" $FLAG -XX:ReservedCodeCacheSize=128m -XX:MaxMetaspaceSize=256m -XX:CompressedClassSpaceSize=128m \
+java -Djava.io.tmpdir="${FULL_TMPDIR}" -Duser.home="${FULL_TMPDIR}" -Dsun.jnu.encoding=UTF-8 -Dfile.encoding=UTF-8 -Duser.country=US -Duser.language=en -Xss2M -Xms64m -Xmx${MEMORY} -Dosgi.configuration.area="${OSGI_CONFIGDIR}" $FLAG ${CDS_OPTION:+"${CDS_OPTION}"} -XX:ReservedCodeCacheSize=128m -XX:MaxMetaspaceSize=256m -XX:CompressedClassSpaceSize=128m \
   -XX:+UseG1GC -XX:ParallelGCThreads=1 -XX:CICompilerCount=2 -XX:ConcGCThreads=1 -XX:G1ConcRefinementThreads=1 -XX:+UseStringDeduplication \
   --add-opens java.base/java.lang.invoke=ALL-UNNAMED --add-opens java.base/java.lang=ALL-UNNAMED --add-opens java.base/java.lang.reflect=ALL-UNNAMED --add-opens java.base/java.util=ALL-UNNAMED --add-opens java.base/java.io=ALL-UNNAMED \
-  -cp "${LOCATION}/launcher/*" org.openmole.launcher.Launcher --plugins "${LOCATION}/plugins/" --priority "logging" --run org.openmole.runtime.SimExplorer --osgi-directory "${OSGI_CONFIGDIR}" --osgi-locking-none -- --workspace "${OPENMOLE_WORKSPACE}" $@
+  -cp "${LOCATION}/launcher/*" org.openmole.launcher.Launcher --plugins "${LOCATION}/plugins/" --priority "logging" --run org.openmole.runtime.SimExplorer --osgi-directory "${OSGI_CONFIGDIR}" --osgi-locking-none ${OPENMOLE_OSGI_CACHE:+--osgi-cache "${OPENMOLE_OSGI_CACHE}"} -- --workspace "${OPENMOLE_WORKSPACE}" $@
 
 RETURNCODE=$?
 
+if [ -n "${CDS_DUMP}" ]; then
+  if [ $RETURNCODE -eq 0 ] && [ -f "${CDS_DUMP}" ]; then mv -f "${CDS_DUMP}" "${CDS_ARCHIVE}"; else rm -f "${CDS_DUMP}"; fi
+fi
+
 rm -rf "${TMPDIR}"
 
 exit $RETURNCODE
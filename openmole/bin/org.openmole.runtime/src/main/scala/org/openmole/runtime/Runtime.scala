@@ -19,6 +19,7 @@ package org.openmole.runtime
 
 import java.io.File
 import java.io.PrintStream
+import java.util.concurrent.Executors
 import org.openmole.core.exception.InternalProcessingError
 import org.openmole.core.outputmanager.OutputManager
 import org.openmole.core.pluginmanager.PluginManager
@@ -38,9 +39,12 @@ import org.openmole.core.serializer.*
 import org.openmole.core.threadprovider.ThreadProvider
 import org.openmole.core.timeservice.TimeService
 import org.openmole.tool.file.uniqName
+import org.openmole.tool.archive.ArchiveType
 
 import scala.jdk.CollectionConverters.*
 import scala.collection.mutable.HashMap
+import scala.concurrent.{Await, ExecutionContext, Future}
+import scala.concurrent.duration.Duration
 import util.{Failure, Success}
 import org.openmole.core.workflow.execution.Environment.RuntimeLog
 import org.openmole.core.workflow.job.Job
@@ -74,7 +78,8 @@ class Runtime {
     outputMessagePath: String,
     threads:           Int,
     debug:             Boolean,
-    transferRetry:     Option[Int]
+    transferRetry:     Option[Int],
+    transferThreads:   Int
   )(implicit serializerService: SerializerService, newFile: TmpDirectory, fileService: FileService, fileServiceCache: FileServiceCache, preference: Preference, threadProvider: ThreadProvider, eventDispatcher: EventDispatcher, workspace: Workspace, loggerService: LoggerService, networkService: NetworkService, timeService: TimeService) = {
 
     /*--- get execution message and job for runtime---*/
@@ -88,6 +93,10 @@ class Runtime {
         serializerService.deserializeAndExtractFiles[ExecutionMessage](executionMessageFileCache, deleteFilesOnGC = true, gz = true)
       }
 
+    // the results are compressed as the execution message was, they are recognised from their magic number on download
+    val resultCompression: ArchiveType.Compression = ArchiveType.compression(executionMessage.runtimeSettings.resultCompression).getOrElse(ArchiveType.TarGZ)
+    val resultCompressionLevel = Some(executionMessage.runtimeSettings.resultCompressionLevel).filter(_ != 0)
+
     val systemOut = OutputManager.systemOutput
     val systemErr = OutputManager.systemError
 
@@ -102,8 +111,11 @@ class Runtime {
 
     val outputRedirection = OutputRedirection(multiplexedOut)
 
-    def getReplicatedFile(replicatedFile: ReplicatedFile, transferOptions: TransferOptions) =
-      ReplicatedFile.download(replicatedFile) {
+    // the transfers running in parallel share the processors to write the files of the directories they extract
+    val extractionWriters = math.max(1, java.lang.Runtime.getRuntime.availableProcessors / math.max(1, transferThreads))
+
+    def getReplicatedFile(replicatedFile: ReplicatedFile, localDirectory: File, transferOptions: TransferOptions) =
+      ReplicatedFile.downloadTo(replicatedFile, localDirectory, writers = extractionWriters) {
         (path, file) ⇒
           try retry(storage.download(path, file, transferOptions), transferRetry)
           catch {
@@ -111,22 +123,43 @@ class Runtime {
           }
       }
 
+    // the transfers run on a pool of their own, the pool of the thread provider is sized for the execution
+    val transferPool = Executors.newFixedThreadPool(math.max(1, transferThreads), ThreadProvider.threadFactory())
+    implicit val transferContext: ExecutionContext = ExecutionContext.fromExecutor(transferPool)
+
+    def await[T](f: Future[T]) = Await.result(f, Duration.Inf)
+
     val beginTime = System.currentTimeMillis
 
     
     val result = try {
-      logger.fine("Downloading plugins")
+      logger.fine("Downloading plugins and files")
 
-      //val pluginDir = Workspace.newDir
-
-      val plugins =
+      // all the transfers are started at once, the files are downloaded while the plugins are loaded and the jobs deserialized
+      val pluginTransfers =
         for {
           plugin ← executionMessage.plugins
         } yield {
-          val pluginFile = getReplicatedFile(plugin, TransferOptions(raw = true))
-          plugin → pluginFile
+          val localDirectory = newFile.makeNewDir("replica")
+          plugin → Future(getReplicatedFile(plugin, localDirectory, TransferOptions(raw = true)))
         }
 
+      val pluginPaths = executionMessage.plugins.map(_.originalPath).toSet
+
+      /* --- Download the files for the local file cache ---*/
+      val fileTransfers = new HashMap[String, (File, Future[File])]
+
+      for (repliURI ← executionMessage.files) {
+        // To avoid getting twice the same plugin or file
+        if (!pluginPaths.contains(repliURI.originalPath) && !fileTransfers.contains(repliURI.originalPath)) {
+          val localDirectory = newFile.makeNewDir("replica")
+          val local = ReplicatedFile.localFile(repliURI, localDirectory)
+          fileTransfers.put(repliURI.originalPath, local → Future(getReplicatedFile(repliURI, localDirectory, TransferOptions())))
+        }
+      }
+
+      val plugins = pluginTransfers.map { case (p, f) ⇒ p → await(f) }
+
       logger.fine("Downloaded plugins. " + plugins.unzip._2.mkString(", "))
 
       PluginManager.tryLoad(plugins.unzip._2).foreach { case (f, e) ⇒ logger.log(WARNING, s"Error loading bundle $f", e) }
@@ -134,31 +167,19 @@ class Runtime {
       logger.fine("Loaded plugins: " + PluginManager.bundles.map(_.getSymbolicName).mkString(", "))
 
       for { (p, f) ← plugins } usedFiles.put(p.originalPath, f)
+      for { (p, (f, _)) ← fileTransfers } usedFiles.put(p, f)
 
-      /* --- Download the files for the local file cache ---*/
-      logger.fine("Downloading files")
-
-      for (repliURI ← executionMessage.files) {
-        // To avoid getting twice the same plugin
-        if (!usedFiles.contains(repliURI.originalPath)) {
-          val local = getReplicatedFile(repliURI, TransferOptions())
-          usedFiles.put(repliURI.originalPath, local)
-        }
-      }
-      
       val runnableTasks = serializerService.deserializeReplaceFiles[Iterable[RunnableTask]](executionMessage.jobs, Map() ++ usedFiles, gz = true)
 
       val saver = new ContextSaver(runnableTasks.size)
       val allMoleJobs = runnableTasks.map { t ⇒ Job(t.task, t.context, t.id, saver.save, () ⇒ false) }
 
-      val beginExecutionTime = System.currentTimeMillis
-
       /* --- Submit all jobs to the local environment --*/
       logger.fine("Run the jobs")
       val environment = new LocalEnvironment(threads = threads, false, Some("runtime local"))
       environment.start()
 
-      try {
+      val beginExecutionTime = try {
         val taskExecutionContext = TaskExecutionContext.partial(
           applicationExecutionDirectory = newFile.makeNewDir("application"),
           moleExecutionDirectory = newFile.makeNewDir("runtime"),
@@ -177,13 +198,36 @@ class Runtime {
           remote = Some(TaskExecutionContext.Remote(threads))
         )
 
-        for (toProcess ← allMoleJobs)
-          environment.submit(
-            toProcess,
-            taskExecutionContext
-          )
+        def submit(job: Job) = environment.submit(job, taskExecutionContext)
+
+        val allTransfers = Future.sequence(fileTransfers.values.map(_._2))
+
+        val submitted =
+          if (fileTransfers.isEmpty || allMoleJobs.size <= 1) {
+            await(allTransfers)
+            allMoleJobs.foreach(submit)
+            Future.successful(())
+          }
+          else {
+            // a job is submitted as soon as the files it uses are downloaded
+            val transferOfFile = fileTransfers.values.toMap
+            val submits =
+              for { (task, job) ← runnableTasks zip allMoleJobs } yield {
+                val used = serializerService.pluginsAndFiles(task).files.flatMap(transferOfFile.get)
+                Future.sequence(used).map(_ ⇒ submit(job))
+              }
+            Future.sequence(submits)
+          }
+
+        // fails the execution if a transfer or a submission has failed
+        await(allTransfers)
+        await(submitted)
+
+        logger.fine(s"Downloaded files in ${System.currentTimeMillis - beginTime} ms")
 
+        val submittedTime = System.currentTimeMillis
         saver.waitAllFinished
+        submittedTime
       }
       finally environment.stop()
 
@@ -195,7 +239,7 @@ class Runtime {
 
       def uploadArchive = {
         val contextResultFile = fileService.wrapRemoveOnGC(newFile.newFile("contextResult", "res"))
-        serializerService.serializeAndArchiveFiles(contextResults, contextResultFile, gz = true)
+        serializerService.serializeAndArchiveFiles(contextResults, contextResultFile, gz = true, compression = resultCompression, level = resultCompressionLevel)
         ArchiveContextResults(contextResultFile)
       }
 
@@ -225,6 +269,7 @@ class Runtime {
         Failure(t)
     }
     finally {
+      transferPool.shutdownNow()
       multiplexedOut.close()
       multiplexedErr.close()
       outSt.close()
@@ -237,7 +282,7 @@ class Runtime {
 
     newFile.withTmpFile("output", ".tgz") { outputLocal ⇒
       logger.fine(s"Serializing result to $outputLocal")
-      serializerService.serializeAndArchiveFiles(runtimeResult, outputLocal, gz = true)
+      serializerService.serializeAndArchiveFiles(runtimeResult, outputLocal, gz = true, compression = resultCompression, level = resultCompressionLevel)
       logger.fine(s"Upload the serialized result to $outputMessagePath on $storage")
       retry(storage.upload(outputLocal, Some(outputMessagePath), TransferOptions(noLink = true, canMove = true)), transferRetry)
     }
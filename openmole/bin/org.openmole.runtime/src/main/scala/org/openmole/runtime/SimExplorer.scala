@@ -44,15 +44,16 @@ object SimExplorer extends JavaLogger {
       logger.finest("Running OpenMOLE runtime")
 
       case class Config(
-        storage:       Option[String] = None,
-        inputMessage:  Option[String] = None,
-        outputMessage: Option[String] = None,
-        pluginPath:    Option[String] = None,
-        thread:        Option[Int]    = None,
-        workspace:     Option[String] = None,
-        transferRetry: Option[Int]    = None,
-        test:          Boolean        = false,
-        debug:         Boolean        = false
+        storage:         Option[String] = None,
+        inputMessage:    Option[String] = None,
+        outputMessage:   Option[String] = None,
+        pluginPath:      Option[String] = None,
+        thread:          Option[Int]    = None,
+        workspace:       Option[String] = None,
+        transferRetry:   Option[Int]    = None,
+        transferThreads: Option[Int]    = None,
+        test:            Boolean        = false,
+        debug:           Boolean        = false
       )
 
       val parser = new OptionParser[Config]("OpenMOLE") {
@@ -78,6 +79,9 @@ object SimExplorer extends JavaLogger {
         opt[Int]("transfer-retry") text ("Retry fail transfer on failure") action {
           (v, c) ⇒ c.copy(transferRetry = Some(v))
         }
+        opt[Int]("transfer-threads") text ("Number of parallel transfers of the input files") action {
+          (v, c) ⇒ c.copy(transferThreads = Some(v))
+        }
         opt[Unit]('d', "debug") text ("Switch on the debug mode") action {
           (_, c) ⇒ c.copy(debug = true)
         }
@@ -121,7 +125,8 @@ object SimExplorer extends JavaLogger {
                 config.outputMessage.get,
                 threads,
                 config.debug,
-                config.transferRetry
+                config.transferRetry,
+                config.transferThreads.getOrElse(4)
               )
             }
             finally {
@@ -20,7 +20,7 @@ import java.io.File
 
 import org.openmole.core.context.Context
 import org.openmole.core.exception.InternalProcessingError
-import org.openmole.core.fileservice.FileService
+import org.openmole.core.fileservice.{ DirectoryManifest, FileService, FileServiceCache }
 import org.openmole.core.serializer.SerializerService
 import org.openmole.core.tools.service._
 import org.openmole.core.workflow.execution.Environment.RuntimeLog
@@ -50,12 +50,25 @@ package object message {
   case class FileMessage(path: String, hash: String)
 
   object ReplicatedFile {
-    def download(replicatedFile: ReplicatedFile)(download: (String, File) ⇒ Unit, verifyHash: Boolean = false)(implicit newFile: TmpDirectory, fileService: FileService) = {
-      val localDirectory = newFile.makeNewDir("replica")
+    def download(replicatedFile: ReplicatedFile)(download: (String, File) ⇒ Unit, verifyHash: Boolean = false)(implicit newFile: TmpDirectory, fileService: FileService): File =
+      downloadTo(replicatedFile, newFile.makeNewDir("replica"))(download, verifyHash)
+
+    /**
+     * The file where a replicated file is downloaded in localDirectory by downloadTo, it is known before the download
+     * so that the objects referring to it can be deserialized while it is transferred.
+     */
+    def localFile(replicatedFile: ReplicatedFile, localDirectory: File) = localDirectory / replicatedFile.name
+
+    /**
+     * A directory is extracted by writers threads. The memory held by their pending writes is bounded for all the
+     * extractions of the JVM together (see TarInputStreamDecorator.extract), so parallel downloads share it.
+     */
+    def downloadTo(replicatedFile: ReplicatedFile, localDirectory: File, writers: Int = 4)(download: (String, File) ⇒ Unit, verifyHash: Boolean = false)(implicit fileService: FileService): File = {
       try {
+        // the hash of a directory is the root of the manifest of the extracted directory
         def verify(cache: File) =
           if (verifyHash) {
-            val cacheHash = cache.hash().toString
+            val cacheHash = (if (replicatedFile.directory) DirectoryManifest.hash(cache) else cache.hash()).toString
             if (cacheHash != replicatedFile.hash) throw new InternalProcessingError("Hash is incorrect for file " + replicatedFile.originalPath + " replicated at " + replicatedFile.path)
           }
 
@@ -63,16 +76,16 @@ package object message {
           if (replicatedFile.directory) {
             val cache = localDirectory.newFile("archive", ".tgz")
             download(replicatedFile.path, cache)
-            verify(cache)
 
-            val local = localDirectory / replicatedFile.name
-            cache.extract(local, archive = ArchiveType.Tar)
+            val local = localFile(replicatedFile, localDirectory)
+            cache.extract(local, archive = ArchiveType.Tar, writers = writers)
             cache.delete
+            verify(local)
             local.mode = replicatedFile.mode
             local
           }
           else {
-            val cache = localDirectory / replicatedFile.name
+            val cache = localFile(replicatedFile, localDirectory)
             download(replicatedFile.path, cache)
             verify(cache)
 
@@ -90,9 +103,10 @@ package object message {
       finally fileService.deleteWhenEmpty(localDirectory)
     }
 
-    def upload(file: File, upload: File ⇒ String)(implicit newFile: TmpDirectory) = {
+    def upload(file: File, upload: File ⇒ String)(implicit newFile: TmpDirectory, fileService: FileService, fileServiceCache: FileServiceCache) = {
       val isDir = file.isDirectory
 
+      // the archive is uploaded with canMove, so it is not taken from the archive cache of the file service
       val toReplicate =
         if (isDir) {
           val ret = newFile.newFile("archive", ".tar")
@@ -102,7 +116,7 @@ package object message {
         else file
 
       val mode = file.mode
-      val hash = toReplicate.hash().toString
+      val hash = fileService.hash(file).toString
       val uploaded = upload(toReplicate)
       ReplicatedFile(file.getPath, file.getName, isDir, hash, uploaded, mode)
     }
@@ -110,7 +124,8 @@ package object message {
   }
 
   case class ReplicatedFile(originalPath: String, name: String, directory: Boolean, hash: String, path: String, mode: Int)
-  case class RuntimeSettings(archiveResult: Boolean)
+  // the results are compressed as named in the PayloadCompression preference, a level of 0 is the default level
+  case class RuntimeSettings(archiveResult: Boolean, resultCompression: String = "gz", resultCompressionLevel: Int = 0)
 
   case class ExecutionMessage(plugins: Iterable[ReplicatedFile], files: Iterable[ReplicatedFile], jobs: File, runtimeSettings: RuntimeSettings)
 
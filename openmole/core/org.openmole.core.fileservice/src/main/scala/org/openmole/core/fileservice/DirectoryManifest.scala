@@ -0,0 +1,36 @@
+package org.openmole.core.fileservice
+
+import java.io.File
+import java.nio.file.Files
+
+import org.openmole.tool.file._
+import org.openmole.tool.hash._
+
+/**
+ * Content addressed hash of a directory, computed without archiving it. The hash of a directory is the root of a
+ * Merkle tree: it is the hash of the list of its entries, each entry being described by its type, its mode, its name
+ * and the hash of its content (the hash of the target for a symbolic link). Modification times are ignored, as in the
+ * archives of directories used for hashing so far.
+ */
+object DirectoryManifest {
+
+  /** State of a file when its hash was computed, the hash is valid as long as its size and modification time are the same */
+  case class FileState(size: Long, lastModified: Long, hash: Hash)
+
+  def hash(directory: File, hashType: HashType = SHA1): Hash = hash(directory, hashFile(_, hashType), hashType)
+
+  def hash(directory: File, fileHash: File ⇒ Hash, hashType: HashType): Hash = {
+    def entry(f: File) = {
+      val (kind, mode, content) =
+        if (Files.isSymbolicLink(f.toPath)) ("l", 0, hashString(Files.readSymbolicLink(f.toPath).toString, hashType))
+        else if (f.isDirectory) ("d", f.mode, hash(f, fileHash, hashType))
+        else ("f", f.mode, fileHash(f))
+
+      s"$kind $mode $content ${f.getName}\u0000"
+    }
+
+    val entries = Option(directory.listFiles).getOrElse(Array.empty[File]).sortBy(_.getName)
+    hashString(entries.map(entry).mkString, hashType)
+  }
+
+}
@@ -44,6 +44,11 @@ object FileService {
   val archiveCacheSize = PreferenceLocation("FileService", "ArchiveCacheSize", Some(1000L))
   val archiveCacheTime = PreferenceLocation("FileService", "ArchiveCacheTime", Some(10 minutes))
 
+  val tarIndexCacheSize = PreferenceLocation("FileService", "TarIndexCacheSize", Some(100L))
+  val tarIndexCacheTime = PreferenceLocation("FileService", "TarIndexCacheTime", Some(10 minutes))
+
+  val manifestCacheSize = PreferenceLocation("FileService", "ManifestCacheSize", Some(100000L))
+
   def apply()(implicit preference: Preference, threadProvider: ThreadProvider) = {
     val fs = new FileService
     start(fs)
@@ -74,6 +79,15 @@ class FileServiceCache(implicit preference: Preference) {
     CacheBuilder.newBuilder.maximumSize(preference(FileService.archiveCacheSize)).
       expireAfterAccess(preference(FileService.archiveCacheTime).millis, TimeUnit.MILLISECONDS).
       build[String, File]()
+
+  private[fileservice] val tarIndexCache =
+    CacheBuilder.newBuilder.maximumSize(preference(FileService.tarIndexCacheSize)).
+      expireAfterAccess(preference(FileService.tarIndexCacheTime).millis, TimeUnit.MILLISECONDS).
+      build[String, TarIndex]()
+
+  private[fileservice] val manifestCache =
+    CacheBuilder.newBuilder.maximumSize(preference(FileService.manifestCacheSize)).
+      build[String, DirectoryManifest.FileState]()
 }
 
 class FileService(implicit preference: Preference) {
@@ -81,18 +95,39 @@ class FileService(implicit preference: Preference) {
   private[fileservice] val deleteEmpty = ListBuffer[File]()
 
   def hashNoCache(file: File, hashType: HashType = SHA1)(implicit newFile: TmpDirectory) = {
-    if (file.isDirectory) newFile.withTmpFile { archive ⇒
-      file.archive(archive, time = false)
-      hashFile(archive, hashType)
-    }
+    if (file.isDirectory) DirectoryManifest.hash(file, hashType)
     else hashFile(file, hashType)
   }
 
+  /**
+   * The hash of a directory is the root of its manifest (see DirectoryManifest), only the files of the directory which
+   * changed since the last time they were hashed are hashed again.
+   */
   def hash(file: File)(implicit newFile: TmpDirectory, fileServiceCache: FileServiceCache): Hash = {
-    def hash = hashFile(if (file.isDirectory) archiveForDir(file) else file)
+    def hash =
+      if (file.isDirectory) DirectoryManifest.hash(file, manifestFileHash, SHA1)
+      else hashFile(file)
+
     fileServiceCache.hashCache.get(file.getCanonicalPath, hash)
   }
 
+  private def manifestFileHash(file: File)(implicit fileServiceCache: FileServiceCache): Hash = {
+    val size = file.length
+    val lastModified = file.lastModified
+
+    Option(fileServiceCache.manifestCache.getIfPresent(file.getAbsolutePath)) match {
+      case Some(state) if state.size == size && state.lastModified == lastModified ⇒ state.hash
+      case _ ⇒
+        val hash = hashFile(file)
+        fileServiceCache.manifestCache.put(file.getAbsolutePath, DirectoryManifest.FileState(size, lastModified, hash))
+        hash
+    }
+  }
+
+  /**
+   * The archive of a directory is cached along with the hash of the directory, so that it is archived again as soon as
+   * its hash has changed, even if the archive has not expired.
+   */
   def archiveForDir(directory: File)(implicit newFile: TmpDirectory, fileServiceCache: FileServiceCache): File = {
     def archive = {
       val ret = newFile.newFile("archive", ".tar")
@@ -100,7 +135,21 @@ class FileService(implicit preference: Preference) {
       wrapRemoveOnGC(ret)
     }
 
-    fileServiceCache.archiveCache.get(directory.getAbsolutePath, archive)
+    fileServiceCache.archiveCache.get(s"${directory.getCanonicalPath}:${hash(directory)}", archive)
+  }
+
+  /**
+   * The index of an uncompressed tar archive, it is built again when the archive is modified
+   */
+  def tarIndex(archive: File)(implicit fileServiceCache: FileServiceCache): TarIndex =
+    fileServiceCache.tarIndexCache.get(s"${archive.getCanonicalPath}:${archive.length}:${archive.lastModified}", TarIndex.build(archive))
+
+  def extractArchiveEntry(archive: File, entry: String, dest: File)(implicit fileServiceCache: FileServiceCache): File = {
+    dest.createParentDirectory
+    val reader = new TarRandomAccessReader(archive, tarIndex(archive))
+    try reader.extractEntry(entry, dest)
+    finally reader.close()
+    dest
   }
 
   private val emptyDeleter = new AsynchronousDeleter(WeakReference(this))
@@ -99,8 +99,9 @@ class SerializerService { service ⇒
 
   def deserializeFromString[T](s: String, json: Boolean = false): T = buildXStream(json = json).fromXML(s).asInstanceOf[T]
 
+  // a compressed archive may be compressed by any of the compressions of serializeAndArchiveFiles
   def deserializeAndExtractFiles[T](file: File, deleteFilesOnGC: Boolean, gz: Boolean = false)(implicit newFile: TmpDirectory, fileService: FileService): T = {
-    val tis = new TarInputStream(file.bufferedInputStream(gz = gz))
+    val tis = new TarInputStream(if (gz) ArchiveType.decompressedInputStream(file.bufferedInputStream()) else file.bufferedInputStream())
     try deserializeAndExtractFiles(tis, deleteFilesOnGC = deleteFilesOnGC)
     finally tis.close
   }
@@ -114,8 +115,20 @@ class SerializerService { service ⇒
     }
   }
 
-  def serializeAndArchiveFiles(obj: Any, f: File, gz: Boolean = false)(implicit newFile: TmpDirectory): Unit = {
-    val os = new TarOutputStream(f.bufferedOutputStream(gz = gz))
+  def serializeAndArchiveFiles(
+    obj:             Any,
+    f:               File,
+    gz:              Boolean                               = false,
+    compressionPool: Option[java.util.concurrent.Executor] = None,
+    compression:     ArchiveType.Compression               = ArchiveType.TarGZ,
+    level:           Option[Int]                           = None)(implicit newFile: TmpDirectory): Unit = {
+    val os =
+      if (!gz) f.tarOutputStream
+      else compression match {
+        case ArchiveType.TarGZ ⇒ new TarOutputStream(f.gzOutputStream(compressionPool, level))
+        case c                 ⇒ new TarOutputStream(ArchiveType.outputStream(f.bufferedOutputStream(), c, level))
+      }
+
     try serializeAndArchiveFiles(obj, os)
     finally os.close
   }
@@ -166,6 +166,12 @@ class ApiImpl(val services: Services, applicationControl: Option[ApplicationCont
         case n if n.endsWith(".tar.xz") | n.endsWith("txz")  ⇒
           from.extract(to, true, archive = ArchiveType.TarXZ)
           to.applyRecursive((f: File) ⇒ f.setWritable(true))
+        case n if n.endsWith(".tar.zst") | n.endsWith("tzst")  ⇒
+          from.extract(to, true, archive = ArchiveType.TarZstd)
+          to.applyRecursive((f: File) ⇒ f.setWritable(true))
+        case n if n.endsWith(".tar.lz4")  ⇒
+          from.extract(to, true, archive = ArchiveType.TarLZ4)
+          to.applyRecursive((f: File) ⇒ f.setWritable(true))
         case _ ⇒ throw new Throwable("Unknown compression format for file " + from)
     } match
       case Success(_) ⇒ None
@@ -38,6 +38,7 @@ import org.openmole.core.workflow.mole.MoleServices
 import org.openmole.core.workspace._
 import org.openmole.plugin.environment.batch.environment.BatchEnvironment.ExecutionJobRegistry
 import org.openmole.plugin.environment.batch.refresh._
+import org.openmole.tool.archive.ArchiveType
 import org.openmole.tool.cache._
 import org.openmole.tool.collection.RingBuffer
 import org.openmole.tool.file._
@@ -117,6 +118,9 @@ object BatchEnvironment {
 
   val QualityHysteresis = PreferenceLocation("BatchEnvironment", "QualityHysteresis", Some(100))
 
+  val PayloadCompression = PreferenceLocation("BatchEnvironment", "PayloadCompression", Some("gz"))
+  val PayloadCompressionLevel = PreferenceLocation("BatchEnvironment", "PayloadCompressionLevel", Some(0))
+
   private def runtimeDirLocation = openMOLELocation / "runtime"
 
   lazy val runtimeLocation = runtimeDirLocation / "runtime.tar.gz"
@@ -125,6 +129,26 @@ object BatchEnvironment {
   def defaultRuntimeMemory(implicit preference: Preference) = preference(BatchEnvironment.MemorySizeForRuntime)
   def getTokenInterval(implicit preference: Preference, randomProvider: RandomProvider) = preference(GetTokenInterval) * randomProvider().nextDouble
 
+  def payloadCompression(implicit preference: Preference): ArchiveType.Compression =
+    ArchiveType.compression(preference(PayloadCompression)).getOrElse {
+      throw new UserBadDataError(s"Unknown payload compression ${preference(PayloadCompression)}, it should be one of gz, zstd or lz4")
+    }
+
+  def payloadCompressionLevel(implicit preference: Preference) = {
+    val level =
+      preference(PayloadCompressionLevel) match {
+        case 0 ⇒ None
+        case l ⇒ Some(l)
+      }
+
+    try ArchiveType.checkLevel(payloadCompression, level)
+    catch {
+      case e: IllegalArgumentException ⇒ throw new UserBadDataError(e, s"Invalid PayloadCompressionLevel for the ${preference(PayloadCompression)} payload compression")
+    }
+
+    level
+  }
+
   def openMOLEMemoryValue(openMOLEMemory: Option[Information])(implicit preference: Preference) = openMOLEMemory match {
     case None    ⇒ preference(MemorySizeForRuntime)
     case Some(m) ⇒ m
@@ -188,14 +212,17 @@ object BatchEnvironment {
     val isDir = file.isDirectory
     val toReplicatePath = file.getCanonicalFile
 
-    val (toReplicate, options) =
-      if (isDir) (services.fileService.archiveForDir(file), transferOptions.copy(noLink = true))
-      else (file, transferOptions)
-
     val fileMode = file.mode
-    val hash = services.fileService.hash(toReplicate).toString
+    // a directory is hashed from its manifest, it is only archived if it has to be uploaded
+    val hash = services.fileService.hash(file).toString
 
-    def uploadReplica = signalUpload(eventDispatcher.eventId, upload(toReplicate, options), toReplicate, environment, storageId)
+    def uploadReplica = {
+      val (toReplicate, options) =
+        if (isDir) (services.fileService.archiveForDir(file), transferOptions.copy(noLink = true))
+        else (file, transferOptions)
+
+      signalUpload(eventDispatcher.eventId, upload(toReplicate, options), toReplicate, environment, storageId)
+    }
 
     val replica = services.replicaCatalog.uploadAndGet(uploadReplica, exist, remove, toReplicatePath, hash, storageId)
     ReplicatedFile(file.getPath, file.getName, isDir, hash, replica.path, fileMode)
@@ -235,7 +262,14 @@ object BatchEnvironment {
     /* ---- upload the execution message ----*/
     val inputPath =
       newFile.withTmpFile("job", ".tar") { executionMessageFile ⇒
-        serializerService.serializeAndArchiveFiles(executionMessage, executionMessageFile, gz = true)
+        serializerService.serializeAndArchiveFiles(
+          executionMessage,
+          executionMessageFile,
+          gz = true,
+          compressionPool = Some(threadProvider.pool),
+          compression = payloadCompression,
+          level = payloadCompressionLevel
+        )
         signalUpload(eventDispatcher.eventId, upload(executionMessageFile, TransferOptions(noLink = true, canMove = true)), executionMessageFile, environment, storageId)
       }
 
@@ -280,11 +314,15 @@ object BatchEnvironment {
     val pluginReplicas = shuffled(serializationPlugin)(services.randomProvider()).map { replicate(_, TransferOptions(raw = true)) }
     val files = shuffled(serializationFile)(services.randomProvider()).map { replicate(_, TransferOptions()) }
 
+    import services.preference
+
     ExecutionMessage(
       pluginReplicas.sortBy(_.originalPath),
       files.sortBy(_.originalPath),
       jobFile,
-      environment.runtimeSettings
+      environment.runtimeSettings.copy(
+        resultCompression = preference(PayloadCompression),
+        resultCompressionLevel = payloadCompressionLevel.getOrElse(0))
     )
   }
 
@@ -276,10 +276,9 @@ class EGIEnvironment[A: EGIAuthenticationInterface](
 
         case class FileInfo(size: Long, hash: String)
 
-        def fileSize(file: File) = (if (file.isDirectory) fileService.archiveForDir(file) else file).size
-
+        // the size of a directory is the size of its files, it is not archived to be measured
         val usedFiles = BatchEnvironment.jobFiles(batchExecutionJob, env)
-        val usedFilesInfo = usedFiles.map { f ⇒ f → FileInfo(fileSize(f), fileService.hash(f).toString) }.toMap
+        val usedFilesInfo = usedFiles.map { f ⇒ f → FileInfo(f.size, fileService.hash(f).toString) }.toMap
         val totalFileSize = usedFilesInfo.values.toSeq.map(_.size).sum
 
         val onStorage: Map[String, Seq[Replica]] = replicaCatalog.forHashes(usedFilesInfo.values.toVector.map(_.hash), sss.map(_._2).map(implicitly[EnvironmentStorage[WebDavStorage]].id)).groupBy(_.storage)
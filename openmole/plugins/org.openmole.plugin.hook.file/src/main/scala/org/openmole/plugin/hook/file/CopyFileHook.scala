@@ -86,7 +86,7 @@ case class CopyFileHook(
           Some(Variable(filePrototype, to))
         }
         else if (options.compress) {
-          from.copyCompress(to)
+          from.copyCompress(to, compressionPool = Some(executionContext.threadProvider.pool))
           None
         }
         else {
@@ -78,7 +78,12 @@ object NetLogoTask {
     }
   }
 
-  case class NetoLogoInstance(directory: File, workspaceDirectory: File, netLogo: NetLogo)
+  /**
+   * An opened NetLogo workspace
+   * @param globals the values of the globals right after the model was opened, restored before each run of a reused
+   *                workspace
+   */
+  case class NetoLogoInstance(directory: File, workspaceDirectory: File, netLogo: NetLogo, globals: Seq[(String, AnyRef)] = Seq())
 
   def openNetLogoWorkspace(netLogoFactory: NetLogoFactory, workspace: Workspace, directory: File, switch3d: Boolean) = {
     val (workDir, script) = deployWorkspace(workspace, directory)
@@ -116,6 +121,32 @@ object NetLogoTask {
       }
     }
 
+  /**
+   * The values of the globals of a freshly opened workspace, among which the values of the interface widgets. The lists
+   * reported by NetLogo are converted back to arrays, as setGlobal expects them.
+   */
+  def snapshotGlobals(netLogo: NetLogo): Seq[(String, AnyRef)] = {
+    def settable(v: AnyRef): AnyRef = v match {
+      case c: util.Collection[_] ⇒ c.toArray.map(e ⇒ settable(e.asInstanceOf[AnyRef]))
+      case v                     ⇒ v
+    }
+
+    val globals = withThreadClassLoader(netLogo.getNetLogoClassLoader) { netLogo.globals() }
+    globals.toSeq.map { g ⇒ g → settable(report(netLogo, g)) }
+  }
+
+  /**
+   * Restore the globals recorded by snapshotGlobals, clear the world and seed the random number generator. The
+   * clear-all resets the globals declared in the code, so a reused workspace starts each run as a freshly opened one
+   * would, with the interface globals restored, whatever the inputs of the previous run.
+   * @param seed the seed of the run if any
+   */
+  def resetWorld(instance: NetoLogoInstance, seed: Option[Int]) = {
+    for ((name, value) ← instance.globals) setGlobal(instance.netLogo, name, value)
+    executeNetLogo(instance.netLogo, "clear-all")
+    seed.foreach { s ⇒ executeNetLogo(instance.netLogo, s"random-seed $s") }
+  }
+
   def report(netLogo: NetLogo, name: String) =
     withThreadClassLoader(netLogo.getNetLogoClassLoader) { netLogo.report(name) }
 
@@ -131,7 +162,11 @@ object NetLogoTask {
   def createPool(netLogoFactory: NetLogoFactory, workspace: NetLogoTask.Workspace, cached: Boolean, ignoreErrorOnDispose: Boolean, switch3d: Boolean)(implicit newFile: TmpDirectory) = {
     def createInstance = {
       val workspaceDirectory = newFile.newDir("netlogoworkpsace")
-      NetLogoTask.openNetLogoWorkspace(netLogoFactory, workspace, workspaceDirectory, switch3d)
+      val instance = NetLogoTask.openNetLogoWorkspace(netLogoFactory, workspace, workspaceDirectory, switch3d)
+
+      // a pooled workspace is compiled once and its globals restored between the runs
+      if (cached) instance.copy(globals = NetLogoTask.snapshotGlobals(instance.netLogo))
+      else instance
     }
 
     def destroyInstance(instance: NetLogoTask.NetoLogoInstance) = {
@@ -303,8 +338,7 @@ trait NetLogoTask extends Task with ValidateTask { netlogoTask =>
       val context = parameters.context + (External.PWD → instance.workspaceDirectory.getAbsolutePath)
       val preparedContext = External.deployInputFilesAndResources(external, context, resolver)
 
-      NetLogoTask.executeNetLogo(instance.netLogo, "clear-all")
-      seed.foreach { s ⇒ NetLogoTask.executeNetLogo(instance.netLogo, s"random-seed ${context(s)}") }
+      NetLogoTask.resetWorld(instance, seed.map(context(_)))
 
       for (cmd ← setup.map(_.from(context))) NetLogoTask.executeNetLogo(instance.netLogo, cmd, ignoreError)
 
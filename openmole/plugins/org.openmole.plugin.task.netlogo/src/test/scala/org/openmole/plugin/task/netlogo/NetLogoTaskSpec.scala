@@ -0,0 +1,73 @@
+package org.openmole.plugin.task.netlogo
+
+import org.scalatest._
+
+import java.nio.file.Files
+
+import org.openmole.plugin.tool.netlogo.NetLogo
+
+class NetLogoTaskSpec extends flatspec.AnyFlatSpec with matchers.should.Matchers {
+
+  /**
+   * A NetLogo world reduced to its globals and its random number generator, clear-all resets the globals declared in
+   * the code and keeps the interface globals as NetLogo does
+   */
+  class GlobalsWorld(interface: Map[String, AnyRef], code: Seq[String]) extends NetLogo {
+    val values = collection.mutable.Map[String, AnyRef]() ++ interface ++ code.map(_ → Double.box(0.0))
+    var rng = new scala.util.Random(0)
+
+    def globals() = (interface.keys ++ code).toArray
+    def reporters() = Array.empty[String]
+    def open(script: String, switch3d: Boolean) = {}
+    def command(cmd: String) =
+      cmd.takeWhile(_ != ' ') match {
+        case "random-seed" ⇒ rng = new scala.util.Random(cmd.drop("random-seed ".length).toLong)
+        case "clear-all"   ⇒ for (g ← code) values(g) = Double.box(0.0)
+      }
+    def isNetLogoException(exception: Throwable) = false
+    def report(variable: String): AnyRef =
+      values.get(variable) match {
+        // lists are reported as collections
+        case Some(a: Array[_]) ⇒ java.util.Arrays.asList(a: _*)
+        case Some(v)           ⇒ v
+        case None              ⇒ Double.box(rng.nextDouble())
+      }
+    def setGlobal(variable: String, value: AnyRef) = values(variable) = value
+    def dispose() = {}
+    def getNetLogoClassLoader = getClass.getClassLoader
+  }
+
+  def reusedWorkspace = {
+    val directory = Files.createTempDirectory("netlogotest").toFile
+    val netLogo = new GlobalsWorld(Map("density" → Double.box(0.5), "steps" → Array[AnyRef](Double.box(1.0), Double.box(2.0))), Seq("count"))
+    NetLogoTask.NetoLogoInstance(directory, directory, netLogo, NetLogoTask.snapshotGlobals(netLogo))
+  }
+
+  "A reused workspace" should "start each run with the globals of the opened model" in {
+    val instance = reusedWorkspace
+    val netLogo = instance.netLogo.asInstanceOf[GlobalsWorld]
+
+    NetLogoTask.resetWorld(instance, None)
+    NetLogoTask.setGlobal(netLogo, "density", Double.box(0.9))
+    NetLogoTask.setGlobal(netLogo, "steps", Array[AnyRef](Double.box(3.0)))
+    NetLogoTask.setGlobal(netLogo, "count", Double.box(10.0))
+
+    NetLogoTask.resetWorld(instance, None)
+    netLogo.values("density") should equal(0.5)
+    netLogo.values("steps") should equal(Array[AnyRef](Double.box(1.0), Double.box(2.0)))
+    netLogo.values("count") should equal(0.0)
+  }
+
+  it should "draw the same numbers in the runs with the same seed" in {
+    val instance = reusedWorkspace
+
+    def run(seed: Option[Int]) = {
+      NetLogoTask.resetWorld(instance, seed)
+      NetLogoTask.report(instance.netLogo, "random-float 1")
+    }
+
+    run(Some(7)) should equal(run(Some(7)))
+    run(None) should not equal (run(None))
+  }
+
+}
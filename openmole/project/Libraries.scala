@@ -101,6 +101,8 @@ object Libraries {
   lazy val txtmark = "org.openmole.library" %% "com-github-rjeschke-txtmark" % "0.13"
   lazy val spatialsampling = "org.openmole.library" %% "org-openmole-spatialsampling" % spatialsamplingVersion cross CrossVersion.for3Use2_13
   lazy val xzJava = "org.openmole.library" %% "xzjava" % xzVersion
+  lazy val aircompressor = "org.openmole.library" %% "aircompressor" % aircompressorVersion
+  lazy val lz4Java = "org.openmole.library" %% "lz4java" % lz4Version
   lazy val guava = "org.openmole.library" %% "com-google-guava" % guavaVersion
   lazy val jline = "org.openmole.library" %% "org-jline-jline" % jlineVersion
 
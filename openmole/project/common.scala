@@ -57,6 +57,8 @@ object common {
   def endpoint4SXHRClientVersion = "5.2.0"
 
   def xzVersion = "1.9"
+  def aircompressorVersion = "0.27"
+  def lz4Version = "1.8.0"
 
   def asyncVersion = "1.0.1"
 
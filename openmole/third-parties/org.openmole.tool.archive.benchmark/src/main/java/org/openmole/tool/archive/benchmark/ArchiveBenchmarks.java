@@ -0,0 +1,38 @@
+package org.openmole.tool.archive.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the archive benchmarks with the GC profiler, so the allocation rate is
+ * reported next to the throughput:
+ *
+ * <pre>
+ * sbt "openmoleArchiveBenchmark/Jmh/runMain org.openmole.tool.archive.benchmark.ArchiveBenchmarks [regexp] [result.json]"
+ * </pre>
+ *
+ * 'regexp' selects the benchmarks (all of them by default, e.g.
+ * "HeaderBenchmark.parseHeaders"), the results are also written to
+ * 'result.json' if given.
+ */
+
+public class ArchiveBenchmarks {
+
+	public static void main(String[] args) throws RunnerException {
+		ChainedOptionsBuilder options = new OptionsBuilder().include(
+				ArchiveBenchmarks.class.getPackage().getName() + "."
+						+ (args.length > 0 ? args[0] : "")).addProfiler(
+				GCProfiler.class);
+
+		if (args.length > 1) {
+			options.resultFormat(ResultFormatType.JSON).result(args[1]);
+		}
+
+		new Runner(options.build()).run();
+	}
+
+}
@@ -0,0 +1,135 @@
+package org.openmole.tool.archive.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openmole.tool.archive.TarEntry;
+import org.openmole.tool.archive.TarFileUtil;
+import org.openmole.tool.archive.TarInputStream;
+import org.openmole.tool.archive.TarOutputStream;
+
+/**
+ * Parsing of the headers of an archive of many tiny entries, where reading the
+ * archive is dominated by the headers. The parsing of TarEntry is compared to
+ * the former byte by byte parsing kept in LegacyHeaderParser, and listArchive
+ * reads the whole archive with a TarInputStream.
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HeaderBenchmark {
+
+	@Param({ "100000" })
+	public int entries;
+
+	@Param({ "gnu", "ustar" })
+	public String format;
+
+	private byte[][] headers;
+	private byte[] archive;
+
+	@Setup
+	public void setup() throws Exception {
+		this.headers = new byte[this.entries][];
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] content = new byte[100];
+
+		try (TarOutputStream tos = new TarOutputStream(bytes)) {
+			for (int i = 0; i < this.entries; i++) {
+				TarEntry entry = new TarEntry("data/" + (i / 1000) + "/file-" + i
+						+ ".txt");
+				entry.setTarFormat(this.format.equals("ustar") ? TarEntry.USTAR_FORMAT
+						: TarEntry.GNU_FORMAT);
+				entry.setNames("openmole", "openmole");
+				entry.setModTime(1700000000000L + i);
+				entry.setMode(0100644);
+				entry.setSize(content.length);
+
+				this.headers[i] = new byte[512];
+				entry.writeEntryHeader(this.headers[i]);
+
+				tos.putNextEntry(entry);
+				tos.write(content);
+				tos.closeEntry();
+			}
+		}
+
+		this.archive = bytes.toByteArray();
+
+		for (int i = 0; i < this.entries; i++) {
+			TarEntry entry = new TarEntry(this.headers[i]);
+
+			if (!new LegacyHeaderParser(this.headers[i]).sameAs(entry)) {
+				throw new IllegalStateException("header " + i
+						+ " is not parsed as before, " + entry);
+			}
+		}
+	}
+
+	@Benchmark
+	public void parseHeaders(Blackhole bh) throws Exception {
+		for (byte[] header : this.headers) {
+			TarEntry entry = new TarEntry(header);
+			bh.consume(entry.getName());
+			bh.consume(entry.getSize());
+			bh.consume(entry.getMode());
+		}
+	}
+
+	@Benchmark
+	public void legacyParseHeaders(Blackhole bh) {
+		for (byte[] header : this.headers) {
+			LegacyHeaderParser entry = new LegacyHeaderParser(header);
+			bh.consume(entry.name);
+			bh.consume(entry.size);
+			bh.consume(entry.mode);
+		}
+	}
+
+	@Benchmark
+	public long checkSum() {
+		long sum = 0;
+
+		for (byte[] header : this.headers) {
+			sum += TarFileUtil.computeCheckSum(header);
+		}
+
+		return sum;
+	}
+
+	@Benchmark
+	public long legacyCheckSum() {
+		long sum = 0;
+
+		for (byte[] header : this.headers) {
+			sum += LegacyHeaderParser.computeCheckSum(header);
+		}
+
+		return sum;
+	}
+
+	@Benchmark
+	public long listArchive() throws IOException {
+		long size = 0;
+
+		try (TarInputStream tis = new TarInputStream(new ByteArrayInputStream(
+				this.archive))) {
+			TarEntry entry;
+
+			while ((entry = tis.getNextEntry()) != null) {
+				size += entry.getSize();
+			}
+		}
+
+		return size;
+	}
+
+}
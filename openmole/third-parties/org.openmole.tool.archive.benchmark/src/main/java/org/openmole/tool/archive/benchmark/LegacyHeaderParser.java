@@ -0,0 +1,189 @@
+package org.openmole.tool.archive.benchmark;
+
+import java.math.BigInteger;
+
+import org.openmole.tool.archive.TarConstants;
+import org.openmole.tool.archive.TarEntry;
+
+/**
+ * The byte by byte header parsing of TarEntry and TarFileUtil before the
+ * fields were decoded 8 bytes at a time, kept as the reference of
+ * HeaderBenchmark. All the names are decoded through a StringBuilder when the
+ * header is parsed.
+ */
+
+public class LegacyHeaderParser {
+
+	private static final int BYTE_MASK = 255;
+
+	public String name;
+	public int mode;
+	public int userId;
+	public int groupId;
+	public long size;
+	public long modTime;
+	public int checkSum;
+	public byte linkFlag;
+	public String linkName;
+	public String magic;
+	public String userName;
+	public String groupName;
+	public int devMajor;
+	public int devMinor;
+
+	public LegacyHeaderParser(byte[] headerBuf) {
+		boolean ustar = headerBuf[257] == 'u' && headerBuf[258] == 's'
+				&& headerBuf[259] == 't' && headerBuf[260] == 'a'
+				&& headerBuf[261] == 'r' && headerBuf[262] == 0;
+		boolean gnu = !ustar && headerBuf[257] == 'u';
+
+		this.name = parseFileName(headerBuf);
+
+		int offset = TarConstants.NAMELEN;
+		this.mode = (int) parseOctal(headerBuf, offset, TarConstants.MODELEN);
+		offset += TarConstants.MODELEN;
+		this.userId = (int) parseOctal(headerBuf, offset, TarConstants.UIDLEN);
+		offset += TarConstants.UIDLEN;
+		this.groupId = (int) parseOctal(headerBuf, offset, TarConstants.GIDLEN);
+		offset += TarConstants.GIDLEN;
+
+		if (gnu) {
+			this.size = getSize(headerBuf, offset, TarConstants.SIZELEN);
+		} else {
+			this.size = parseOctal(headerBuf, offset, TarConstants.SIZELEN);
+		}
+
+		offset += TarConstants.SIZELEN;
+		this.modTime = parseOctal(headerBuf, offset, TarConstants.MODTIMELEN);
+		offset += TarConstants.MODTIMELEN;
+		this.checkSum = (int) parseOctal(headerBuf, offset,
+				TarConstants.CHKSUMLEN);
+		offset += TarConstants.CHKSUMLEN;
+		this.linkFlag = headerBuf[offset++];
+		this.linkName = parseName(headerBuf, offset, TarConstants.NAMELEN);
+		offset += TarConstants.NAMELEN;
+
+		if (ustar) {
+			this.magic = parseName(headerBuf, offset, TarConstants.MAGICLEN);
+			offset += TarConstants.MAGICLEN;
+			this.userName = parseName(headerBuf, offset, TarConstants.UNAMELEN);
+			offset += TarConstants.UNAMELEN;
+			this.groupName = parseName(headerBuf, offset, TarConstants.GNAMELEN);
+			offset += TarConstants.GNAMELEN;
+			this.devMajor = (int) parseOctal(headerBuf, offset,
+					TarConstants.DEVLEN);
+			offset += TarConstants.DEVLEN;
+			this.devMinor = (int) parseOctal(headerBuf, offset,
+					TarConstants.DEVLEN);
+		} else {
+			this.magic = "";
+			this.userName = "";
+			this.groupName = "";
+		}
+	}
+
+	/**
+	 * Check that an entry parsed by TarEntry has the same fields.
+	 */
+	public boolean sameAs(TarEntry entry) {
+		return this.name.equals(entry.getName())
+				&& this.mode == entry.getMode()
+				&& this.userId == entry.getUserId()
+				&& this.groupId == entry.getGroupId()
+				&& this.size == entry.getSize()
+				&& this.modTime * TarEntry.MILLIS_PER_SECOND == entry.getModTime()
+				&& this.linkName.equals(entry.getLinkName())
+				&& this.userName.equals(entry.getUserName())
+				&& this.groupName.equals(entry.getGroupName());
+	}
+
+	public static long computeCheckSum(byte[] buf) {
+		long sum = 0;
+
+		for (int i = 0; i < buf.length; ++i) {
+			sum += BYTE_MASK & buf[i];
+		}
+
+		return sum;
+	}
+
+	public static long getSize(byte[] header, int offset, int length) {
+		long test = parseOctal(header, offset, length);
+
+		if (test <= 0 && header[offset] == (byte) 128) {
+			byte[] last = new byte[length];
+
+			for (int i = 0; i < length; i++) {
+				last[i] = header[offset + i];
+			}
+
+			last[0] = (byte) 0;
+
+			return new BigInteger(last).longValue();
+		}
+
+		return test;
+	}
+
+	public static String parseFileName(byte[] header) {
+		StringBuilder result = new StringBuilder(256);
+
+		if (header[345] != 0) {
+			for (int i = 345; i < 500 && header[i] != 0; ++i) {
+				result.append((char) header[i]);
+			}
+
+			result.append("/");
+		}
+
+		for (int i = 0; i < 100 && header[i] != 0; ++i) {
+			result.append((char) header[i]);
+		}
+
+		return result.toString();
+	}
+
+	public static String parseName(byte[] header, int offset, int length) {
+		StringBuilder result = new StringBuilder(length);
+
+		int end = offset + length;
+		for (int i = offset; i < end; ++i) {
+			if (header[i] == 0) {
+				break;
+			}
+			result.append((char) header[i]);
+		}
+
+		return result.toString();
+	}
+
+	public static long parseOctal(byte[] header, int offset, int length) {
+		long result = 0;
+		boolean stillPadding = true;
+
+		int end = offset + length;
+		for (int i = offset; i < end; ++i) {
+			if (header[i] == 0) {
+				break;
+			}
+
+			if (header[i] == TarConstants.SPACER_BYTE
+					|| header[i] == TarConstants.ZERO_BYTE) {
+				if (stillPadding) {
+					continue;
+				}
+
+				if (header[i] == TarConstants.SPACER_BYTE) {
+					break;
+				}
+			}
+
+			stillPadding = false;
+
+			result = (result << 3) + (header[i] - TarConstants.ZERO_BYTE);
+		}
+
+		return result;
+	}
+
+}
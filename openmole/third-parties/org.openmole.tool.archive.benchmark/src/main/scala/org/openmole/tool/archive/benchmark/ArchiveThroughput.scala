@@ -0,0 +1,83 @@
+package org.openmole.tool.archive.benchmark
+
+import java.io.File
+import java.lang.management.ManagementFactory
+import java.nio.file.{ Files, Paths }
+
+import scala.jdk.CollectionConverters.*
+import scala.util.Try
+
+/**
+ * Measures the archive operations on the synthetic trees outside of JMH, to compare storages:
+ *
+ *   sbt "openmoleArchiveBenchmark/runMain org.openmole.tool.archive.benchmark.ArchiveThroughput [--dir directory] [--tree tiny,huge,deep] [--operation archiveTar,...] [--iterations 3] [--scale 1.0]"
+ *
+ * The trees are created in a temporary directory of --dir (the default temporary directory otherwise). For each tree
+ * and operation it prints the best throughput over the iterations in MB/s of content of the tree, the peak RSS of the
+ * JVM during the operation (Linux only) and the heap allocated by the thread running the operation, the threads of the
+ * parallel operations are not accounted for.
+ */
+object ArchiveThroughput:
+
+  case class Options(
+    dir:        Option[File] = None,
+    trees:      Seq[Tree]    = Tree.values.toSeq,
+    operations: Seq[String]  = Fixture.operations.map(_._1),
+    iterations: Int          = 3,
+    scale:      Double       = 1.0)
+
+  def main(args: Array[String]): Unit =
+    val options = parse(args.toList, Options())
+
+    for tree <- options.trees
+    do
+      val directory = options.dir match
+        case Some(d) => d.mkdirs(); Files.createTempDirectory(d.toPath, "archive-benchmark").toFile
+        case None    => Files.createTempDirectory("archive-benchmark").toFile
+
+      val fixture = Fixture(directory, tree, options.scale)
+
+      try
+        println(f"$tree: ${fixture.size / 1e6}%.1f MB in $directory")
+        for (name, operation) <- Fixture.operations.filter((n, _) => options.operations.contains(n))
+        do
+          val measures =
+            for _ <- 0 until options.iterations
+            yield
+              resetPeakRSS()
+              val allocated = allocatedBytes
+              val begin = System.nanoTime
+              operation(fixture)
+              val time = (System.nanoTime - begin) / 1e9
+              val measure = (time, peakRSS, allocatedBytes - allocated)
+              fixture.clean()
+              measure
+
+          val (time, rss, allocated) = measures.minBy(_._1)
+          val rssString = rss.map(r => f"${r / 1e6}%.0f MB").getOrElse("unknown")
+          println(f"  $name%-20s ${fixture.size / 1e6 / time}%10.1f MB/s ${time * 1000}%10.0f ms   peak RSS $rssString%10s   allocated ${allocated / 1e6}%.0f MB")
+      finally fixture.delete()
+
+  def parse(args: List[String], options: Options): Options =
+    args match
+      case "--dir" :: d :: tail        => parse(tail, options.copy(dir = Some(new File(d))))
+      case "--tree" :: t :: tail       => parse(tail, options.copy(trees = t.split(',').toSeq.map(Tree(_))))
+      case "--operation" :: o :: tail  => parse(tail, options.copy(operations = o.split(',').toSeq))
+      case "--iterations" :: i :: tail => parse(tail, options.copy(iterations = i.toInt))
+      case "--scale" :: s :: tail      => parse(tail, options.copy(scale = s.toDouble))
+      case Nil                         => options
+      case a :: _                      => throw new IllegalArgumentException(s"Unknown argument $a")
+
+  // the kernel resets the peak RSS of a process when 5 is written to clear_refs (Linux 4.0 and later)
+  private def resetPeakRSS() = Try(Files.write(Paths.get("/proc/self/clear_refs"), "5".getBytes))
+
+  private def peakRSS: Option[Long] =
+    Try {
+      val line = Files.readAllLines(Paths.get("/proc/self/status")).asScala.find(_.startsWith("VmHWM:")).get
+      line.split("\\s+")(1).toLong * 1024
+    }.toOption
+
+  private def allocatedBytes: Long =
+    ManagementFactory.getThreadMXBean match
+      case bean: com.sun.management.ThreadMXBean => bean.getThreadAllocatedBytes(Thread.currentThread.getId)
+      case _                                     => 0L
@@ -0,0 +1,49 @@
+package org.openmole.tool.archive.benchmark
+
+import java.io.File
+
+import org.openmole.tool.archive.*
+import org.openmole.tool.file.*
+import org.openmole.tool.stream.*
+
+/**
+ * A synthetic tree created in directory with its tar and tar.gz archives, and the archive operations measured on it.
+ * The operations write to output, which must be cleaned between two operations.
+ */
+class Fixture(val directory: File, val tree: Tree, scale: Double = 1.0):
+  val source = directory / "tree"
+  val size = Tree.create(tree, source, scale)
+
+  val tar = directory / "tree.tar"
+  val tgz = directory / "tree.tar.gz"
+  source.archive(tar)
+  source.archive(tgz, archive = ArchiveType.TarGZ)
+
+  def output = directory / "output"
+
+  def archiveTar() = source.archive(output)
+  def archiveTarGZ() = source.archive(output, archive = ArchiveType.TarGZ)
+  def tarGzOutputStream() = withClosable(new TarGzOutputStream(output.bufferedOutputStream())) { _.archive(source) }
+  def xzCompress() = XZ.compress(tar, output)
+  def extractTar() = tar.extract(output, archive = ArchiveType.Tar)
+  def extractTarParallel() = tar.extract(output, archive = ArchiveType.Tar, writers = 4)
+  def extractTarGZ() = tgz.extract(output, archive = ArchiveType.TarGZ)
+  def listTar() = tar.listArchive(ArchiveType.Tar)
+  def listTarGZ() = tgz.listArchive(ArchiveType.TarGZ)
+
+  def clean() = output.recursiveDelete
+  def delete() = directory.recursiveDelete
+
+object Fixture:
+
+  val operations: Seq[(String, Fixture => Any)] = Seq(
+    "archiveTar" -> (_.archiveTar()),
+    "archiveTarGZ" -> (_.archiveTarGZ()),
+    "tarGzOutputStream" -> (_.tarGzOutputStream()),
+    "xzCompress" -> (_.xzCompress()),
+    "extractTar" -> (_.extractTar()),
+    "extractTarParallel" -> (_.extractTarParallel()),
+    "extractTarGZ" -> (_.extractTarGZ()),
+    "listTar" -> (_.listTar()),
+    "listTarGZ" -> (_.listTarGZ())
+  )
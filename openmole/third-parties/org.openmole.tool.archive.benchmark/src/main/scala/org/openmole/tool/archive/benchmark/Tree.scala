@@ -0,0 +1,70 @@
+package org.openmole.tool.archive.benchmark
+
+import java.io.File
+import java.nio.file.{ Files, Paths }
+
+import org.openmole.tool.file.*
+import org.openmole.tool.stream.*
+
+import scala.util.Random
+
+/**
+ * Synthetic trees for the archive benchmarks:
+ *  - Tiny: many tiny files, where the archives are dominated by the headers,
+ *  - Huge: a few huge files, where the archives are dominated by copying and compressing,
+ *  - Deep: a deep tree of directories with symbolic links to files and directories.
+ *
+ * The contents are deterministic and half compressible: random blocks alternate with blocks of text.
+ */
+enum Tree:
+  case Tiny, Huge, Deep
+
+object Tree:
+
+  def apply(name: String): Tree =
+    Tree.values.find(_.toString.equalsIgnoreCase(name)).getOrElse(throw new IllegalArgumentException(s"Unknown tree $name, it should be one of ${Tree.values.mkString(", ")}"))
+
+  /**
+   * Create a tree in directory, the number and the size of its files are multiplied by scale.
+   *
+   * @return the size in bytes of the content of the files
+   */
+  def create(tree: Tree, directory: File, scale: Double = 1.0): Long =
+    val random = new Random(42)
+    def scaled(n: Int) = math.max(1, (n * scale).toInt)
+
+    directory.mkdirs()
+
+    tree match
+      case Tiny =>
+        (0 until scaled(20000)).map { i =>
+          val dir = directory /> s"dir-${i % 100}"
+          file(dir / s"file-$i.txt", random.nextInt(2048), random)
+        }.sum
+      case Huge =>
+        (0 until 4).map { i => file(directory / s"file-$i.bin", scaled(64 * 1024 * 1024), random) }.sum
+      case Deep =>
+        var dir = directory
+        var size = 0L
+        for depth <- 0 until scaled(64)
+        do
+          dir = dir /> s"level-$depth"
+          size += (0 until 16).map { i => file(dir / s"file-$i.txt", 4096, random) }.sum
+          if depth > 0 then
+            Files.createSymbolicLink(dir / "link-to-file", Paths.get("..", "file-0.txt"))
+            Files.createSymbolicLink(dir / "link-to-parent", Paths.get(".."))
+        size
+
+  private def file(f: File, size: Int, random: Random): Long =
+    val block = new Array[Byte](64)
+    val text = Array.tabulate[Byte](block.length)(i => ('a' + i % 26).toByte)
+
+    withClosable(f.bufferedOutputStream()) { os =>
+      for offset <- 0 until size by block.length
+      do
+        val isRandom = (offset / block.length) % 2 == 0
+        if isRandom then random.nextBytes(block)
+        os.write(if isRandom then block else text, 0, math.min(block.length, size - offset))
+    }
+
+    size
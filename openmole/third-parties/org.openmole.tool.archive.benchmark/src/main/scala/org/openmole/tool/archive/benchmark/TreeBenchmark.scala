@@ -0,0 +1,43 @@
+package org.openmole.tool.archive.benchmark
+
+import java.nio.file.Files
+import java.util.concurrent.TimeUnit
+
+import org.openjdk.jmh.annotations.*
+
+/**
+ * The archive operations on the synthetic trees, see Fixture. The tree and its archives are created once per trial
+ * and the output of an operation is deleted after each invocation, out of the measured time. Run with ArchiveBenchmarks
+ * for the allocation rate, the throughput in MB/s and the peak RSS are printed by ArchiveThroughput.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.AverageTime))
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+class TreeBenchmark:
+
+  @Param(Array("tiny", "huge", "deep"))
+  var tree: String = _
+
+  var fixture: Fixture = _
+
+  @Setup(Level.Trial)
+  def setup() = fixture = Fixture(Files.createTempDirectory("archive-benchmark").toFile, Tree(tree))
+
+  @TearDown(Level.Invocation)
+  def clean() = fixture.clean()
+
+  @TearDown(Level.Trial)
+  def tearDown() = fixture.delete()
+
+  @Benchmark def archiveTar() = fixture.archiveTar()
+  @Benchmark def archiveTarGZ() = fixture.archiveTarGZ()
+  @Benchmark def tarGzOutputStream() = fixture.tarGzOutputStream()
+  @Benchmark def xzCompress() = fixture.xzCompress()
+  @Benchmark def extractTar() = fixture.extractTar()
+  @Benchmark def extractTarParallel() = fixture.extractTarParallel()
+  @Benchmark def extractTarGZ() = fixture.extractTarGZ()
+  @Benchmark def listTar() = fixture.listTar()
+  @Benchmark def listTarGZ() = fixture.listTarGZ()
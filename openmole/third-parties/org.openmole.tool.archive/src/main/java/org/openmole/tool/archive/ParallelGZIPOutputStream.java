@@ -0,0 +1,226 @@
+package org.openmole.tool.archive;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * The ParallelGZIPOutputStream compresses a stream in the gzip format on
+ * several threads. The stream is split in chunks which are deflated
+ * concurrently by an Executor, each chunk into a complete gzip member, and the
+ * members are written in order. The result is a multi-member gzip stream that
+ * GZIPInputStream and gzip read as a single stream.
+ * <p>
+ * A chunk which has not been compressed yet when its member must be written
+ * is compressed by the writing thread, so the stream always makes progress,
+ * even if all the threads of the Executor are busy.
+ */
+
+public class ParallelGZIPOutputStream extends FilterOutputStream {
+
+	public static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+
+	private static final byte[] HEADER = { (byte) 0x1f, (byte) 0x8b,
+			Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0 };
+
+	private Executor executor;
+	private int chunkSize;
+	private int level;
+	private int maxPending;
+
+	private byte[] chunk;
+	private int chunkLen;
+	private ArrayDeque<FutureTask<byte[]>> pending;
+	private boolean memberWritten;
+	private boolean finished;
+	private boolean closed;
+
+	public ParallelGZIPOutputStream(OutputStream out, Executor executor) {
+		this(out, executor, DEFAULT_CHUNK_SIZE, Deflater.DEFAULT_COMPRESSION);
+	}
+
+	public ParallelGZIPOutputStream(OutputStream out, Executor executor,
+			int chunkSize, int level) {
+		this(out, executor, chunkSize, level, Math.max(2, 2 * Runtime
+				.getRuntime().availableProcessors()));
+	}
+
+	/**
+	 * @param maxPending
+	 *            The maximum number of chunks being compressed, it bounds the
+	 *            memory used by the stream to about twice maxPending chunks.
+	 */
+	public ParallelGZIPOutputStream(OutputStream out, Executor executor,
+			int chunkSize, int level, int maxPending) {
+		super(out);
+
+		if (chunkSize <= 0 || maxPending <= 0) {
+			throw new IllegalArgumentException("chunk size '" + chunkSize
+					+ "' and max pending chunks '" + maxPending
+					+ "' must be positive");
+		}
+
+		this.executor = executor;
+		this.chunkSize = chunkSize;
+		this.level = level;
+		this.maxPending = maxPending;
+		this.chunk = new byte[chunkSize];
+		this.chunkLen = 0;
+		this.pending = new ArrayDeque<FutureTask<byte[]>>();
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		this.ensureOpen();
+		this.chunk[this.chunkLen++] = (byte) b;
+
+		if (this.chunkLen == this.chunkSize) {
+			this.submitChunk();
+		}
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		this.ensureOpen();
+
+		while (len > 0) {
+			int num = Math.min(len, this.chunkSize - this.chunkLen);
+			System.arraycopy(b, off, this.chunk, this.chunkLen, num);
+			this.chunkLen += num;
+			off += num;
+			len -= num;
+
+			if (this.chunkLen == this.chunkSize) {
+				this.submitChunk();
+			}
+		}
+	}
+
+	/**
+	 * Compresses the remaining data and writes all the members, without
+	 * closing the underlying stream. Nothing can be written afterwards.
+	 */
+	public void finish() throws IOException {
+		if (this.finished) {
+			return;
+		}
+
+		// an empty stream is still a valid gzip stream made of one member
+		if (this.chunkLen > 0 || (!this.memberWritten && this.pending.isEmpty())) {
+			this.submitChunk();
+		}
+
+		while (!this.pending.isEmpty()) {
+			this.writeMember(this.pending.poll());
+		}
+
+		this.finished = true;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (this.closed) {
+			return;
+		}
+
+		this.closed = true;
+
+		try {
+			this.finish();
+		} finally {
+			this.out.close();
+		}
+	}
+
+	private void ensureOpen() throws IOException {
+		if (this.finished) {
+			throw new IOException("write beyond end of stream");
+		}
+	}
+
+	private void submitChunk() throws IOException {
+		final byte[] data = this.chunk;
+		final int length = this.chunkLen;
+		final int compressionLevel = this.level;
+
+		FutureTask<byte[]> task = new FutureTask<byte[]>(
+				() -> compress(data, length, compressionLevel));
+		this.pending.add(task);
+
+		// a rejected chunk is compressed when its member is written
+		try {
+			this.executor.execute(task);
+		} catch (RejectedExecutionException e) {
+		}
+
+		this.chunk = new byte[this.chunkSize];
+		this.chunkLen = 0;
+
+		while (this.pending.size() >= this.maxPending) {
+			this.writeMember(this.pending.poll());
+		}
+	}
+
+	private void writeMember(FutureTask<byte[]> task) throws IOException {
+		// does nothing if the task is already running or done
+		task.run();
+
+		try {
+			this.out.write(task.get());
+			this.memberWritten = true;
+		} catch (InterruptedException e) {
+			throw new InterruptedIOException(
+					"interrupted while compressing a chunk");
+		} catch (ExecutionException e) {
+			throw new IOException("error while compressing a chunk", e
+					.getCause());
+		}
+	}
+
+	private static byte[] compress(byte[] data, int length, int level) {
+		ByteArrayOutputStream member = new ByteArrayOutputStream(
+				length / 2 + 64);
+		member.write(HEADER, 0, HEADER.length);
+
+		Deflater deflater = new Deflater(level, true);
+
+		try {
+			deflater.setInput(data, 0, length);
+			deflater.finish();
+
+			byte[] buf = new byte[64 * 1024];
+
+			while (!deflater.finished()) {
+				int num = deflater.deflate(buf);
+				member.write(buf, 0, num);
+			}
+		} finally {
+			deflater.end();
+		}
+
+		CRC32 crc = new CRC32();
+		crc.update(data, 0, length);
+
+		writeInt(member, (int) crc.getValue());
+		writeInt(member, length);
+
+		return member.toByteArray();
+	}
+
+	private static void writeInt(ByteArrayOutputStream os, int value) {
+		os.write(value & 0xff);
+		os.write((value >> 8) & 0xff);
+		os.write((value >> 16) & 0xff);
+		os.write((value >> 24) & 0xff);
+	}
+
+}
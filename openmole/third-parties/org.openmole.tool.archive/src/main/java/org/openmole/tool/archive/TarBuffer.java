@@ -1,8 +1,11 @@
 package org.openmole.tool.archive;
 
+import java.io.EOFException;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
 import java.util.Arrays;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -37,6 +40,8 @@ public class TarBuffer extends Object {
 	private byte[] blockBuffer;
 	public int currBlkIdx;
 	private int currRecIdx;
+	private int flushedRecs;
+	private int runOffset;
 	private int blockSize;
 	private int recordSize;
 	private int recsPerBlock;
@@ -187,8 +192,21 @@ public class TarBuffer extends Object {
 	 *            The record data to check.
 	 */
 	public boolean isEOFRecord(byte[] record) {
-		for (int i = 0, sz = this.getRecordSize(); i < sz; ++i) {
-			if (record[i] != 0) {
+		return isEOFRecord(record, 0);
+	}
+
+	/**
+	 * Determine if the record at the given offset of an array (usually the
+	 * block buffer, see readRecords) indicates End of Archive.
+	 * 
+	 * @param buf
+	 *            The array containing the record.
+	 * @param offset
+	 *            The offset of the record within buf.
+	 */
+	public boolean isEOFRecord(byte[] buf, int offset) {
+		for (int i = offset, end = offset + this.getRecordSize(); i < end; ++i) {
+			if (buf[i] != 0) {
 				return false;
 			}
 		}
@@ -209,25 +227,64 @@ public class TarBuffer extends Object {
                                + " blkIdx = " + currBlkIdx);
         }
 
+        if (this.readRecords(1) == 0) {
+            return null;
+        }
+
+        byte[] result = new byte[recordSize];
+
+        System.arraycopy(this.blockBuffer, this.runOffset, result, 0,
+                         this.recordSize);
+
+        return result;
+    }
+
+    /**
+     * Read up to maxRecords consecutive records without copying them. The
+     * records are left in place in the block buffer, starting at
+     * getRecordOffset(), and stay valid until the next read or skip. A run
+     * never spans two blocks, so fewer records than asked for may be returned.
+     *
+     * @param maxRecords the maximum number of records to read, at least 1
+     * @return The number of records read, 0 at End-Of-File.
+     * @throws IOException on error
+     */
+    public int readRecords(int maxRecords) throws IOException {
         if (this.inStream == null) {
             throw new IOException("Either reading from an output buffer, or the input stream was closed.");
         }
 
         if (this.currRecIdx >= this.recsPerBlock) {
             if (!readBlock()) {
-                return null;
+                return 0;
             }
         }
 
-        byte[] result = new byte[recordSize];
+        int numRecords = Math.min(maxRecords, this.recsPerBlock - this.currRecIdx);
 
-        System.arraycopy(this.blockBuffer,
-                         (this.currRecIdx * this.recordSize), result, 0,
-                         this.recordSize);
+        this.runOffset = this.currRecIdx * this.recordSize;
+        this.currRecIdx += numRecords;
 
-        this.currRecIdx++;
+        return numRecords;
+    }
 
-        return result;
+    /**
+     * Get the block buffer holding the records returned by readRecords.
+     *
+     * @return The block buffer, it must not be modified.
+     */
+    public byte[] getBlockBuffer() {
+        return this.blockBuffer;
+    }
+
+    /**
+     * Get the offset in the block buffer of the first record returned by the
+     * last call to readRecords.
+     *
+     * @return The offset of the record run.
+     */
+    public int getRecordOffset() {
+        return this.runOffset;
     }
 
     /**
@@ -340,13 +397,86 @@ public class TarBuffer extends Object {
 			throw new IOException("writing to an input buffer");
 		}
 
-		this.outStream.write(this.blockBuffer, 0, this.blockSize);
+		int offset = this.flushedRecs * this.recordSize;
+		this.outStream.write(this.blockBuffer, offset, this.blockSize - offset);
 		this.outStream.flush();
 
 		this.currRecIdx = 0;
+		this.flushedRecs = 0;
 		this.currBlkIdx++;
 	}
 
+	/**
+	 * Tell if records can be transferred to the archive with
+	 * transferRecords(), that is if the archive is written to a file.
+	 */
+	public boolean canTransferRecords() {
+		return this.outStream instanceof FileOutputStream;
+	}
+
+	/**
+	 * Transfer records to the archive directly from a file channel, the last
+	 * record being padded with zeros. The records of the current block already
+	 * written are flushed first and the block alignment of the following
+	 * records is kept, so the archive is the same as if the records had been
+	 * written one by one.
+	 * 
+	 * @param source
+	 *            The channel to read the records from, from its position.
+	 * @param count
+	 *            The number of bytes to transfer.
+	 */
+	public void transferRecords(FileChannel source, long count)
+			throws IOException {
+
+		if (logger.isLoggable(Level.FINEST)) {
+			logger.log(Level.FINEST, "TransferRecords: count = " + count
+					+ " recIdx = " + this.currRecIdx + " blkIdx = "
+					+ this.currBlkIdx);
+		}
+
+		if (!this.canTransferRecords()) {
+			throw new IOException("records can only be transferred to a file");
+		}
+
+		int offset = this.flushedRecs * this.recordSize;
+		int end = this.currRecIdx * this.recordSize;
+
+		if (end > offset) {
+			this.outStream.write(this.blockBuffer, offset, end - offset);
+		}
+
+		FileChannel target = ((FileOutputStream) this.outStream).getChannel();
+		long position = source.position();
+		long transferred = 0;
+
+		while (transferred < count) {
+			long num = source.transferTo(position + transferred, count
+					- transferred, target);
+
+			if (num <= 0) {
+				throw new EOFException("source ended at '" + transferred
+						+ "' before the '" + count
+						+ "' bytes to transfer");
+			}
+
+			transferred += num;
+		}
+
+		int padding = (int) ((this.recordSize - count % this.recordSize) % this.recordSize);
+
+		if (padding > 0) {
+			this.outStream.write(new byte[padding]);
+		}
+
+		long records = this.currRecIdx + (count + this.recordSize - 1)
+				/ this.recordSize;
+
+		this.currBlkIdx += (int) (records / this.recsPerBlock);
+		this.currRecIdx = (int) (records % this.recsPerBlock);
+		this.flushedRecs = this.currRecIdx;
+	}
+
 	/**
 	 * Write an archive record to the archive.
 	 * 
@@ -116,6 +116,11 @@ public class TarEntry extends Object implements Cloneable {
     public static final int DEFAULT_FILE_MODE = 0100644;
     /** Convert millis to seconds */
     public static final int MILLIS_PER_SECOND = 1000;
+    /** Offsets of the names decoded lazily from the header */
+    private static final int LINKNAMEOFFSET = 157;
+    private static final int MAGICOFFSET = 257;
+    private static final int UNAMEOFFSET = 265;
+    private static final int GNAMEOFFSET = 297;
     /** If this entry represents a File, this references it. */
     private File file;
     // HEADER VARS
@@ -155,6 +160,11 @@ public class TarEntry extends Object implements Cloneable {
     @SuppressWarnings("unused")
     private long offB;
     private int tarFormat = GNU_FORMAT;
+    /**
+     * The header read by parseTarHeader(), until the names left to null are
+     * decoded from it, see decodeNames()
+     */
+    private byte[] header;
 
     // END HEADER VARS
     /** The default constructor is protected for use only by subclasses. */
@@ -297,6 +307,7 @@ public class TarEntry extends Object implements Cloneable {
      * @return This entry's group name.
      */
     public String getGroupName() {
+        this.decodeNames();
         return this.groupName;
     }
 
@@ -340,6 +351,7 @@ public class TarEntry extends Object implements Cloneable {
      * @return This entry's link name.
      */
     public String getLinkName() {
+        this.decodeNames();
         return linkName.toString();
     }
 
@@ -358,6 +370,7 @@ public class TarEntry extends Object implements Cloneable {
      * @return This entry's user name.
      */
     public String getUserName() {
+        this.decodeNames();
         return this.userName;
     }
 
@@ -524,6 +537,9 @@ public class TarEntry extends Object implements Cloneable {
      * Old unix-style code contributed by David Mehringer
      * <dmehring@astro.uiuc.edu>.
      * 
+     * The buffer is kept by the entry until its link, user and group names are
+     * needed, it must not be modified afterwards.
+     * 
      * @param header
      *            The tar entry header buffer to get information from.
      */
@@ -638,27 +654,20 @@ public class TarEntry extends Object implements Cloneable {
 
         this.linkFlag = headerBuf[offset++];
 
-        this.linkName = TarFileUtil.parseName(headerBuf, offset,
-                TarConstants.NAMELEN);
+        // The link, user and group names are decoded when they are needed
+        this.header = headerBuf;
+        this.linkName = null;
 
         offset += TarConstants.NAMELEN;
 
         if (this.tarFormat == USTAR_FORMAT) {
 
-            this.magic = TarFileUtil.parseName(headerBuf, offset,
-                    TarConstants.MAGICLEN);
-
-            offset += TarConstants.MAGICLEN;
-
-            this.userName = TarFileUtil.parseName(headerBuf, offset,
-                    TarConstants.UNAMELEN);
+            this.magic = null;
+            this.userName = null;
+            this.groupName = null;
 
-            offset += TarConstants.UNAMELEN;
-
-            this.groupName = TarFileUtil.parseName(headerBuf, offset,
-                    TarConstants.GNAMELEN);
-
-            offset += TarConstants.GNAMELEN;
+            offset += TarConstants.MAGICLEN + TarConstants.UNAMELEN
+                    + TarConstants.GNAMELEN;
 
             this.devMajor = (int) TarFileUtil.parseOctal(headerBuf, offset,
                     TarConstants.DEVLEN);
@@ -682,6 +691,40 @@ public class TarEntry extends Object implements Cloneable {
         }
     }
 
+    /**
+     * Decode the names left in the header by parseTarHeader(). Most entries
+     * are only read for their name, type, mode and size, so their other names
+     * are not decoded.
+     */
+    void decodeNames() {
+        if (this.header == null) {
+            return;
+        }
+
+        byte[] headerBuf = this.header;
+        this.header = null;
+
+        if (this.linkName == null) {
+            this.linkName = TarFileUtil.parseName(headerBuf, LINKNAMEOFFSET,
+                    TarConstants.NAMELEN);
+        }
+
+        if (this.magic == null) {
+            this.magic = TarFileUtil.parseName(headerBuf, MAGICOFFSET,
+                    TarConstants.MAGICLEN);
+        }
+
+        if (this.userName == null) {
+            this.userName = TarFileUtil.parseName(headerBuf, UNAMEOFFSET,
+                    TarConstants.UNAMELEN);
+        }
+
+        if (this.groupName == null) {
+            this.groupName = TarFileUtil.parseName(headerBuf, GNAMEOFFSET,
+                    TarConstants.GNAMELEN);
+        }
+    }
+
     /**
      * Set this entry's group id.
      * 
@@ -699,6 +742,7 @@ public class TarEntry extends Object implements Cloneable {
      *            This entry's new group name.
      */
     public void setGroupName(String groupName) {
+        this.decodeNames();
         this.groupName = groupName;
     }
 
@@ -753,6 +797,7 @@ public class TarEntry extends Object implements Cloneable {
      *            This entry's new name.
      */
     public void setLinkName(String linkName) {
+        this.decodeNames();
         this.linkName = linkName;
     }
 
@@ -803,6 +848,7 @@ public class TarEntry extends Object implements Cloneable {
 
         // Set this tar as the requested format
         this.tarFormat = tarFormat;
+        this.decodeNames();
 
         // Set the magic type
         if (tarFormat == UNIX_FORMAT) {
@@ -831,6 +877,7 @@ public class TarEntry extends Object implements Cloneable {
      *            This entry's new user name.
      */
     public void setUserName(String userName) {
+        this.decodeNames();
         this.userName = userName;
     }
 
@@ -855,6 +902,8 @@ public class TarEntry extends Object implements Cloneable {
      *             If the name will not fit in the header.
      */
     public void writeEntryHeader(byte[] outbuf) throws InvalidHeaderException {
+        this.decodeNames();
+
         int offset = 0;
 
         if (this.tarFormat == UNIX_FORMAT && this.name.length() > 100) {
@@ -959,6 +1008,8 @@ public class TarEntry extends Object implements Cloneable {
     public void writeEntryHeaderMulti(byte[] outbuf, int m)
             throws InvalidHeaderException {
 
+        this.decodeNames();
+
         int offset = 0;
 
         if (this.tarFormat == UNIX_FORMAT && this.name.length() > 100) {
@@ -1,7 +1,10 @@
 package org.openmole.tool.archive;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.math.BigInteger;
-import java.util.ArrayList;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
 
 /**
  * These are the standard static helpers for parsing/writing the header data.
@@ -16,11 +19,23 @@ import java.util.ArrayList;
  * Thanks to Thomas Ledoux for his many contributions all over this code. 
  * He fixed the byte shifts and discrepancies between this and the official format.
  * 
+ * The header fields are parsed 8 bytes at a time where possible: the checksum
+ * sums the bytes of a long in parallel lanes, the octal numbers decode 8 digits
+ * with a few shifts and masks and the names are copied as ASCII strings.
+ * 
  */
 public class TarFileUtil {
 
 	private static final int BYTE_MASK = 255;
 
+	private static final VarHandle LONG_LE = MethodHandles
+			.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+	private static final long ONES = 0x0101010101010101L;
+	private static final long HIGH_BITS = 0x8080808080808080L;
+	private static final long LOW_BITS = 0x7f7f7f7f7f7f7f7fL;
+	private static final long ZEROS = 0x3030303030303030L;
+
 
 	/**
 	 * Parse the checksum octal integer from a header buffer.
@@ -45,8 +60,27 @@ public class TarFileUtil {
 	 */
 	public static long computeCheckSum(byte[] buf) {
 		long sum = 0;
+		int i = 0;
+		int end = buf.length - 7;
+
+		while (i < end) {
+			// the bytes are summed in four 16 bits lanes, which cannot
+			// overflow within 128 longs
+			long lanes = 0;
+			int blockEnd = Math.min(end, i + 128 * 8);
+
+			for (; i < blockEnd; i += 8) {
+				long word = (long) LONG_LE.get(buf, i);
+				lanes += (word & 0x00ff00ff00ff00ffL)
+						+ ((word >>> 8) & 0x00ff00ff00ff00ffL);
+			}
+
+			lanes = (lanes & 0x0000ffff0000ffffL)
+					+ ((lanes >>> 16) & 0x0000ffff0000ffffL);
+			sum += (lanes & 0xffffffffL) + (lanes >>> 32);
+		}
 
-		for (int i = 0; i < buf.length; ++i) {
+		for (; i < buf.length; ++i) {
 			sum += BYTE_MASK & buf[i];
 		}
 
@@ -267,26 +301,19 @@ public class TarFileUtil {
 			leftIdx++;
 		} else {
 
-			// We're going to shove all the digits of the long into a byte ArrayList,
-			// then we're going to put them back in rev order into the buffer. 
-			// This isn't efficient and should probably be rewritten when I find some
-			// time.
+			// Count the digits, then write them from the last one
+			int digits = 0;
+			for (long val = value; val > 0; val = val >> 3) {
+				digits++;
+			}
 
-			//TODO: Optimize
-			ArrayList<Byte> vals = new ArrayList<Byte>();
 			long val = value;
-			while(val > 0) {
-				vals.add((byte) (TarConstants.ZERO_BYTE + (byte) (val & 7)));
+			for (int x = digits - 1; x >= 0; x--) {
+				buf[offset + leftIdx + x] = (byte) (TarConstants.ZERO_BYTE + (byte) (val & 7));
 				val = val >> 3;
 			}
 
-			// Now let's iterate in reverse through it and put it on the buffer
-			for(int x = vals.size() - 1; x >= 0; x--) {
-				buf[offset + leftIdx] = vals.get(x);
-				leftIdx++;
-			}
-			
-			vals.clear();
+			leftIdx += digits;
 		}
 
 
@@ -338,17 +365,12 @@ public class TarFileUtil {
 		long test = parseOctal(header, offset, length);
 		if (test <= 0 && header[offset] == (byte) 128) {
 
-			byte[] last = new byte[length];
+			// Big endian binary number after the marker byte
+			long rSize = 0;
 
-			for (int i = 0; i < length; i++) {
-				last[i] = header[offset + i];
+			for (int i = offset + 1; i < offset + length; i++) {
+				rSize = (rSize << 8) | (BYTE_MASK & header[i]);
 			}
-			last[0] = (byte) 0;
-
-			long rSize = new BigInteger(last).longValue();
-
-			// Free memory
-			last = null;
 
 			return rSize;
 
@@ -373,25 +395,19 @@ public class TarFileUtil {
 	 */
 	public static String parseFileName(byte[] header) {
 
-		StringBuilder result = new StringBuilder(256);
+		String name = parseName(header, TarConstants.NAMEOFFSET,
+				TarConstants.NAMELEN);
 
 		// If header[345] is not equal to zero, then it is the "prefix"
 		// that 'ustar' defines. It must be prepended to the "normal"
 		// name field. We are responsible for the separating '/'.
 		//
-		if (header[345] != 0) {
-			for (int i = 345; i < 500 && header[i] != 0; ++i) {
-				result.append((char) header[i]);
-			}
-
-			result.append("/");
-		}
-
-		for (int i = 0; i < 100 && header[i] != 0; ++i) {
-			result.append((char) header[i]);
+		if (header[TarConstants.PREFIXOFFSET] != 0) {
+			return parseName(header, TarConstants.PREFIXOFFSET,
+					TarConstants.PREFIXLEN) + "/" + name;
 		}
 
-		return result.toString();
+		return name;
 	}
 
 	/**
@@ -406,6 +422,17 @@ public class TarFileUtil {
 	 * @return The header's entry name.
 	 */
 	public static String parseName(byte[] header, int offset, int length) {
+		int asciiLength = asciiLength(header, offset, length);
+
+		if (asciiLength == 0) {
+			return "";
+		}
+
+		if (asciiLength >= 0) {
+			return new String(header, offset, asciiLength,
+					StandardCharsets.ISO_8859_1);
+		}
+
 		StringBuilder result = new StringBuilder(length);
 
 		int end = offset + length;
@@ -434,10 +461,29 @@ public class TarFileUtil {
 	public static long parseOctal(byte[] header, int offset, int length) {
 
 		long result = 0;
-		boolean stillPadding = true;
-
+		int i = offset;
 		int end = offset + length;
-		for (int i = offset; i < end; ++i) {
+
+		// The leading digits are decoded 8 at a time, the end of the field
+		// is parsed byte by byte
+		while (i + 8 <= end) {
+			long word = (long) LONG_LE.get(header, i);
+			int digits = octalDigits(word);
+
+			if (digits > 0) {
+				result = (result << (3 * digits)) + octalValue(word, digits);
+				i += digits;
+			}
+
+			if (digits < 8) {
+				break;
+			}
+		}
+
+		// Leading zeros are padding
+		boolean stillPadding = result == 0;
+
+		for (; i < end; ++i) {
 			if (header[i] == 0) {
 				break;
 			}
@@ -490,4 +536,65 @@ public class TarFileUtil {
 
 		return offset + length;
 	}
+
+	/**
+	 * Get the length of a NUL terminated name if it is made of ASCII
+	 * characters only.
+	 * 
+	 * @return The length of the name, or -1 if it contains a non ASCII byte.
+	 */
+	private static int asciiLength(byte[] header, int offset, int length) {
+		int i = offset;
+		int end = offset + length;
+
+		for (; i + 8 <= end; i += 8) {
+			long word = (long) LONG_LE.get(header, i);
+
+			// high bit set on the NUL and non ASCII bytes, the lowest one is
+			// exact
+			long stop = ((word - ONES) & ~word & HIGH_BITS) | (word & HIGH_BITS);
+
+			if (stop != 0) {
+				i += Long.numberOfTrailingZeros(stop) >>> 3;
+				return header[i] == 0 ? i - offset : -1;
+			}
+		}
+
+		for (; i < end; ++i) {
+			if (header[i] == 0) {
+				break;
+			}
+
+			if (header[i] < 0) {
+				return -1;
+			}
+		}
+
+		return i - offset;
+	}
+
+	/**
+	 * Count the octal digits at the start of 8 bytes read in little endian
+	 * order.
+	 */
+	private static int octalDigits(long word) {
+		// the bytes of other are zero for the digits '0' to '7' (0011 0xxx)
+		long other = (word & 0xf8f8f8f8f8f8f8f8L) ^ ZEROS;
+		long notDigits = (((other & LOW_BITS) + LOW_BITS) | other) & HIGH_BITS;
+		return Long.numberOfTrailingZeros(notDigits) >>> 3;
+	}
+
+	/**
+	 * Decode the first digits (1 to 8) of 8 bytes read in little endian order.
+	 */
+	private static long octalValue(long word, int digits) {
+		// drop the bytes after the digits, the digits end up after leading
+		// zeros
+		long d = (word - ZEROS) << (8 * (8 - digits));
+
+		// merge the digits by pairs, then by 4 and 8
+		d = ((d & 0x0007000700070007L) << 3) + ((d >>> 8) & 0x0007000700070007L);
+		d = ((d & 0x0000003f0000003fL) << 6) + ((d >>> 16) & 0x0000003f0000003fL);
+		return ((d & 0xfffL) << 12) + ((d >>> 32) & 0xfffL);
+	}
 }
@@ -1,14 +1,20 @@
 package org.openmole.tool.archive;
 
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Executor;
 import java.util.zip.GZIPOutputStream;
 
 /**
  * Outputs tar.gz files. Added functionality that it doesn't need to know the
  * size of an entry. If an entry has zero size when it is put in the Tar, then
- * it buffers it until it's closed and it knows the size.
+ * it buffers it until it's closed and it knows the size. Entries larger than
+ * the memory threshold are buffered in a temporary file, so that they are
+ * written in constant memory.
  * 
  * This library is under the Apache License Version 2.0
  * 
@@ -21,10 +27,17 @@ import java.util.zip.GZIPOutputStream;
 
 public class TarGzOutputStream extends TarOutputStream {
 
+	public static final int DEFAULT_MEMORY_THRESHOLD = 1024 * 1024;
+
 	private TarOutputStream tos = null;
 	private GZIPOutputStream gzip = null;
 	private ByteArrayOutputStream bos = null;
 	private TarEntry currentEntry = null;
+	private int memoryThreshold = DEFAULT_MEMORY_THRESHOLD;
+	private Path spillFile = null;
+	private OutputStream spillStream = null;
+	private long spillSize = 0;
+	private byte[] oneByte = new byte[1];
 
 	public TarGzOutputStream(OutputStream out) throws IOException {
 		super(null);
@@ -33,25 +46,63 @@ public class TarGzOutputStream extends TarOutputStream {
 		this.bos = new ByteArrayOutputStream();
 	}
 
+	/**
+	 * @param memoryThreshold
+	 *            The number of bytes of an entry of unknown size buffered in
+	 *            memory, beyond which the entry is buffered in a temporary
+	 *            file.
+	 */
+	public TarGzOutputStream(OutputStream out, int memoryThreshold)
+			throws IOException {
+		this(out);
+		this.memoryThreshold = memoryThreshold;
+	}
+
+	/**
+	 * Compresses the archive on the threads of an executor, see
+	 * ParallelGZIPOutputStream.
+	 */
+	public TarGzOutputStream(OutputStream out, Executor executor)
+			throws IOException {
+		super(null);
+		this.tos = new TarOutputStream(new ParallelGZIPOutputStream(out,
+				executor));
+		this.bos = new ByteArrayOutputStream();
+	}
+
 	// proxy all methods, but buffer if unknown size
 
 	@Override
 	public void close() throws IOException {
+		this.discardSpillFile();
 		this.tos.close();
-		this.gzip.finish();
+		if (this.gzip != null) {
+			this.gzip.finish();
+		}
 	}
 
 	@Override
 	public void closeEntry() throws IOException {
 		if (this.currentEntry == null) {
 			this.tos.closeEntry();
-		} else {
+		} else if (this.spillStream == null) {
 			this.currentEntry.setSize(bos.size());
 			this.tos.putNextEntry(this.currentEntry);
 			this.bos.writeTo(this.tos);
 			this.tos.closeEntry();
 			this.currentEntry = null;
 			this.bos = new ByteArrayOutputStream();
+		} else {
+			try {
+				this.spillStream.close();
+				this.currentEntry.setSize(this.spillSize);
+				this.tos.putNextEntry(this.currentEntry);
+				this.tos.writeEntryContents(this.spillFile);
+				this.tos.closeEntry();
+				this.currentEntry = null;
+			} finally {
+				this.discardSpillFile();
+			}
 		}
 	}
 
@@ -83,7 +134,7 @@ public class TarGzOutputStream extends TarOutputStream {
 		if (this.currentEntry == null) {
 			this.tos.write(b);
 		} else {
-			this.bos.write(b);
+			this.bufferEntry(b, 0, b.length);
 		}
 	}
 
@@ -92,7 +143,7 @@ public class TarGzOutputStream extends TarOutputStream {
 		if (this.currentEntry == null) {
 			this.tos.write(b, start, length);
 		} else {
-			this.bos.write(b, start, length);
+			this.bufferEntry(b, start, length);
 		}
 	}
 
@@ -101,7 +152,56 @@ public class TarGzOutputStream extends TarOutputStream {
 		if (this.currentEntry == null) {
 			this.tos.write(b);
 		} else {
-			this.bos.write(b);
+			this.oneByte[0] = (byte) b;
+			this.bufferEntry(this.oneByte, 0, 1);
+		}
+	}
+
+	@Override
+	public void writeEntryContents(Path source) throws IOException {
+		if (this.currentEntry == null) {
+			this.tos.writeEntryContents(source);
+		} else {
+			Files.copy(source, this);
+		}
+	}
+
+	/**
+	 * Buffer the data of the current entry of unknown size, in memory up to
+	 * the memory threshold and then in a temporary file.
+	 */
+	private void bufferEntry(byte[] b, int start, int length)
+			throws IOException {
+		if (this.spillStream == null
+				&& this.bos.size() + (long) length > this.memoryThreshold) {
+			this.spillFile = Files.createTempFile("tarentry", ".tmp");
+			this.spillStream = new BufferedOutputStream(Files
+					.newOutputStream(this.spillFile));
+			this.bos.writeTo(this.spillStream);
+			this.spillSize = this.bos.size();
+			this.bos = new ByteArrayOutputStream();
+		}
+
+		if (this.spillStream != null) {
+			this.spillStream.write(b, start, length);
+			this.spillSize += length;
+		} else {
+			this.bos.write(b, start, length);
+		}
+	}
+
+	private void discardSpillFile() throws IOException {
+		if (this.spillFile != null) {
+			try {
+				if (this.spillStream != null) {
+					this.spillStream.close();
+				}
+			} finally {
+				Files.deleteIfExists(this.spillFile);
+				this.spillFile = null;
+				this.spillStream = null;
+				this.spillSize = 0;
+			}
 		}
 	}
 
@@ -0,0 +1,194 @@
+package org.openmole.tool.archive;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The TarIndex records the entries of an uncompressed tar archive with the
+ * offset of their contents in the archive, so that an entry can be read
+ * without reading the archive from its start, see TarRandomAccessReader.
+ * <p>
+ * The index is built by reading only the header records of the archive, the
+ * contents of the entries are skipped. GNU long names are supported. An entry
+ * is found by its name, with or without its leading "/" or "./" and trailing
+ * "/". When several entries have the same name, the last one is indexed, as
+ * it is the one left by an extraction.
+ */
+
+public class TarIndex {
+
+	private List<TarEntry> entries = new ArrayList<TarEntry>();
+	private List<Long> offsets = new ArrayList<Long>();
+	private Map<String, Integer> byName = new HashMap<String, Integer>();
+
+	private TarIndex() {
+	}
+
+	/**
+	 * Build the index of a tar archive.
+	 *
+	 * @param tar
+	 *            The uncompressed tar archive.
+	 */
+	public static TarIndex build(Path tar) throws IOException {
+		try (FileChannel channel = FileChannel.open(tar,
+				StandardOpenOption.READ)) {
+			return build(channel);
+		}
+	}
+
+	/**
+	 * Build the index of a tar archive, from the start of the channel.
+	 *
+	 * @param channel
+	 *            The channel of the uncompressed tar archive.
+	 */
+	public static TarIndex build(FileChannel channel) throws IOException {
+		TarIndex index = new TarIndex();
+		int recordSize = TarConstants.DEFAULT_RCDSIZE;
+		ByteBuffer header = ByteBuffer.allocate(recordSize);
+		long size = channel.size();
+		long position = 0;
+		String longName = null;
+
+		while (position + recordSize <= size) {
+			header.clear();
+			readFully(channel, header, position);
+			byte[] headerBuf = header.array();
+
+			if (isEOFRecord(headerBuf)) {
+				break;
+			}
+
+			TarEntry entry;
+
+			try {
+				entry = new TarEntry(headerBuf);
+			} catch (InvalidHeaderException ex) {
+				throw new InvalidHeaderException("bad header at offset "
+						+ position + ", " + ex.getMessage());
+			}
+
+			long offset = position + recordSize;
+			long entrySize = entry.getSize();
+			position = offset + (entrySize + recordSize - 1) / recordSize
+					* recordSize;
+
+			// JRL - Gnutar longlink support, the name is the content of the
+			// entry and applies to the next entry
+			if (entry.isGNULongNameEntry()) {
+				ByteBuffer name = ByteBuffer.allocate((int) entrySize);
+				readFully(channel, name, offset);
+				longName = new String(name.array());
+
+				if (longName.length() > 0
+						&& longName.charAt(longName.length() - 1) == 0) {
+					longName = longName.substring(0, longName.length() - 1);
+				}
+
+				continue;
+			}
+
+			if (longName != null) {
+				entry.setName(longName);
+				longName = null;
+			}
+
+			// the entry keeps the header until its names are decoded, the
+			// buffer is reused for the next header
+			entry.decodeNames();
+
+			index.byName.put(normalize(entry.getName()), index.entries.size());
+			index.entries.add(entry);
+			index.offsets.add(offset);
+		}
+
+		return index;
+	}
+
+	/**
+	 * Get the entries of the archive, in the order of the archive.
+	 */
+	public List<TarEntry> getEntries() {
+		return Collections.unmodifiableList(this.entries);
+	}
+
+	/**
+	 * Get an entry by name.
+	 *
+	 * @return The entry, or null if the archive has no entry with this name.
+	 */
+	public TarEntry getEntry(String name) {
+		Integer i = this.byName.get(normalize(name));
+		return i == null ? null : this.entries.get(i);
+	}
+
+	/**
+	 * Get the offset of the contents of an entry in the archive.
+	 *
+	 * @return The offset, or -1 if the archive has no entry with this name.
+	 */
+	public long getOffset(String name) {
+		Integer i = this.byName.get(normalize(name));
+		return i == null ? -1 : this.offsets.get(i);
+	}
+
+	public int size() {
+		return this.entries.size();
+	}
+
+	private static String normalize(String name) {
+		int start = 0;
+		int end = name.length();
+
+		while (true) {
+			if (name.startsWith("/", start)) {
+				start++;
+			} else if (name.startsWith("./", start)) {
+				start += 2;
+			} else {
+				break;
+			}
+		}
+
+		while (end > start && name.charAt(end - 1) == '/') {
+			end--;
+		}
+
+		return name.substring(start, end);
+	}
+
+	private static boolean isEOFRecord(byte[] record) {
+		for (int i = 0; i < record.length; ++i) {
+			if (record[i] != 0) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	static void readFully(FileChannel channel, ByteBuffer buf, long position)
+			throws IOException {
+		while (buf.hasRemaining()) {
+			int num = channel.read(buf, position);
+
+			if (num < 0) {
+				throw new EOFException("unexpected end of archive at offset "
+						+ position);
+			}
+
+			position += num;
+		}
+	}
+
+}
@@ -36,7 +36,11 @@ public class TarInputStream extends FilterInputStream {
 	private long entryOffset;
 
 	private byte[] oneBuf;
-	private byte[] readBuf;
+
+	// The part of the last record read that has not been returned yet, it is
+	// left in the block buffer of the TarBuffer (see TarBuffer.readRecords).
+	private int readBufOffset;
+	private int readBufLength;
 
 	private TarBuffer buffer;
 	private TarEntry currEntry;
@@ -55,7 +59,7 @@ public class TarInputStream extends FilterInputStream {
 
 		this.buffer = new TarBuffer(is, blockSize, recordSize);
 
-		this.readBuf = null;
+		this.readBufLength = 0;
 		this.oneBuf = new byte[1];
 		this.hasHitEOF = false;
 	}
@@ -99,16 +103,14 @@ public class TarInputStream extends FilterInputStream {
 	 *            The OutputStream into which to write the entry's data.
 	 */
 	public void copyEntryContents(OutputStream out) throws IOException {
-		byte[] buf = new byte[TarConstants.LARGE_BUFFER_SIZE];
-
+		// The data records are written straight from the block buffer.
 		int numRead = -1;
-		while ((numRead = this.read(buf, 0, TarConstants.LARGE_BUFFER_SIZE)) > -1) {
-
-			out.write(buf, 0, numRead);
+		while ((numRead = this.nextRun(TarConstants.LARGE_BUFFER_SIZE)) > -1) {
+			out.write(this.buffer.getBlockBuffer(), this.readBufOffset, numRead);
+			this.readBufOffset += numRead;
+			this.readBufLength -= numRead;
 		}
 		out.flush();
-
-		buf = null;
 	}
 
 	/**
@@ -156,7 +158,7 @@ public class TarInputStream extends FilterInputStream {
 
 			// Starting a new file, free up resources
 			this.currEntry = null;
-			this.readBuf = null;
+			this.readBufLength = 0;
 		}
 
 		byte[] headerBuf = this.buffer.readRecord();
@@ -341,64 +343,60 @@ public class TarInputStream extends FilterInputStream {
 			return -1;
 		}
 
-		if ((numToRead + entryOffset) > entrySize) {
-			numToRead = (int) (entrySize - entryOffset);
-		}
-
-		if (readBuf != null) {
-			int sz = (numToRead > readBuf.length) ? readBuf.length
-					: numToRead;
+		// Whole runs of data records are copied at once from the block buffer.
+		int sz;
+		while (totalRead < numToRead
+				&& (sz = this.nextRun(numToRead - totalRead)) > -1) {
+			System.arraycopy(this.buffer.getBlockBuffer(), this.readBufOffset,
+					buf, offset + totalRead, sz);
 
-			System.arraycopy(readBuf, 0, buf, offset, sz);
-
-			if (sz >= readBuf.length) {
-				readBuf = null;
-			} else {
-				int newLen = readBuf.length - sz;
-				byte[] newBuf = new byte[newLen];
+			this.readBufOffset += sz;
+			this.readBufLength -= sz;
+			totalRead += sz;
+		}
 
-				System.arraycopy(readBuf, sz, newBuf, 0, newLen);
+		return (totalRead == 0 && numToRead > 0) ? -1 : totalRead;
+	}
 
-				readBuf = newBuf;
-			}
+	/**
+	 * Makes the next bytes of the current entry available in the block buffer
+	 * at readBufOffset, reading the records that contain up to numToRead
+	 * bytes if no byte of the last record read is left. The caller consumes
+	 * the returned number of bytes by advancing readBufOffset and readBufLength.
+	 * 
+	 * @param numToRead
+	 *            The maximum number of bytes wanted.
+	 * @return The number of bytes available, or -1 at the end of the entry.
+	 */
+	private int nextRun(int numToRead) throws IOException {
+		if (entryOffset >= entrySize) {
+			return -1;
+		}
 
-			totalRead += sz;
-			numToRead -= sz;
-			offset += sz;
+		if ((numToRead + entryOffset) > entrySize) {
+			numToRead = (int) (entrySize - entryOffset);
 		}
 
-		while (numToRead > 0) {
-			byte[] rec = buffer.readRecord();
+		if (readBufLength == 0) {
+			int recordSize = buffer.getRecordSize();
+			int numRecords = buffer.readRecords((int) (((long) numToRead + recordSize - 1) / recordSize));
 
-			if (rec == null) {
+			if (numRecords == 0) {
 				// Unexpected EOF!
 				throw new IOException("unexpected EOF with " + numToRead
 						+ " bytes unread");
 			}
 
-			int sz = numToRead;
-			int recLen = rec.length;
-
-			if (recLen > sz) {
-				System.arraycopy(rec, 0, buf, offset, sz);
-
-				readBuf = new byte[recLen - sz];
-
-				System.arraycopy(rec, sz, readBuf, 0, recLen - sz);
-			} else {
-				sz = recLen;
-
-				System.arraycopy(rec, 0, buf, offset, recLen);
-			}
-
-			totalRead += sz;
-			numToRead -= sz;
-			offset += sz;
+			readBufOffset = buffer.getRecordOffset();
+			readBufLength = numRecords * recordSize;
 		}
 
-		entryOffset += totalRead;
+		int sz = Math.min(numToRead, readBufLength);
 
-		return totalRead;
+		// The padding of the last record is dropped along with the entry.
+		entryOffset += sz;
+
+		return sz;
 	}
 
 	/**
@@ -420,27 +418,20 @@ public class TarInputStream extends FilterInputStream {
 	@Override
 	public long skip(long numToSkip) throws IOException {
 
-		// TODO: Review and possibly revise
-		// This is horribly inefficient, but it ensures that we
-		// properly skip over bytes via the TarBuffer...
-		//
-		byte[] skipBuf = new byte[TarConstants.SKIP_BUFFER_SIZE];
+		// The records are skipped in the TarBuffer without being copied.
 		long skip = numToSkip;
-		int realSkip = -1;
 		int numRead = -1;
 
 		while (skip > 0) {
-			realSkip = skip > skipBuf.length ? skipBuf.length : (int) skip;
-			numRead = read(skipBuf, 0, realSkip);
+			numRead = nextRun((int) Math.min(skip, Integer.MAX_VALUE));
 			if (numRead == -1) {
 				break;
 			}
+			readBufOffset += numRead;
+			readBufLength -= numRead;
 			skip -= numRead;
 		}
 
-		// Free memory
-		skipBuf = null;
-
 		return numToSkip - skip;
 
 	}
@@ -3,6 +3,10 @@ package org.openmole.tool.archive;
 import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -394,6 +398,37 @@ public class TarOutputStream extends FilterOutputStream {
 		}
 	}
 
+	/**
+	 * Writes the contents of the current tar archive entry from a file. When
+	 * the archive is written to a FileOutputStream, the contents are
+	 * transferred with FileChannel.transferTo() and do not go through the
+	 * record buffer. Otherwise, they are written with write().
+	 * 
+	 * @param source
+	 *            The file holding the contents of the entry, its size must be
+	 *            the size specified in the entry header.
+	 */
+	public void writeEntryContents(Path source) throws IOException {
+		if (this.assemLen > 0 || !this.buffer.canTransferRecords()) {
+			Files.copy(source, this);
+			return;
+		}
+
+		try (FileChannel channel = FileChannel.open(source,
+				StandardOpenOption.READ)) {
+			long numToWrite = this.currSize - this.currBytes;
+
+			if (channel.size() > numToWrite) {
+				throw new IOException("request to write '" + channel.size()
+						+ "' bytes exceeds size in header of '" + this.currSize
+						+ "' bytes");
+			}
+
+			this.buffer.transferRecords(channel, numToWrite);
+			this.currBytes += numToWrite;
+		}
+	}
+
 	/**
 	 * Writes a byte to the current tar archive entry.
 	 * 
@@ -0,0 +1,168 @@
+package org.openmole.tool.archive;
+
+import java.io.Closeable;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The TarRandomAccessReader reads single entries of an uncompressed tar
+ * archive, seeking straight to their contents with a FileChannel instead of
+ * reading the archive from its start. The entries are found with a TarIndex,
+ * which may be built once and shared between readers of the same archive.
+ * <p>
+ * The input streams of the entries read the channel at absolute positions, so
+ * several entries can be read at the same time.
+ */
+
+public class TarRandomAccessReader implements Closeable {
+
+	private FileChannel channel;
+	private TarIndex index;
+
+	public TarRandomAccessReader(Path tar) throws IOException {
+		this.channel = FileChannel.open(tar, StandardOpenOption.READ);
+
+		try {
+			this.index = TarIndex.build(this.channel);
+		} catch (IOException e) {
+			this.channel.close();
+			throw e;
+		}
+	}
+
+	public TarRandomAccessReader(Path tar, TarIndex index) throws IOException {
+		this.channel = FileChannel.open(tar, StandardOpenOption.READ);
+		this.index = index;
+	}
+
+	public TarIndex getIndex() {
+		return this.index;
+	}
+
+	/**
+	 * Get an entry by name.
+	 *
+	 * @return The entry, or null if the archive has no entry with this name.
+	 */
+	public TarEntry getEntry(String name) {
+		return this.index.getEntry(name);
+	}
+
+	/**
+	 * Get an input stream on the contents of an entry.
+	 *
+	 * @param name
+	 *            The name of the entry.
+	 */
+	public InputStream getInputStream(String name) throws IOException {
+		long offset = this.offset(name);
+		return new EntryInputStream(this.channel, offset, offset
+				+ this.index.getEntry(name).getSize());
+	}
+
+	/**
+	 * Copy the contents of an entry to a file with FileChannel.transferTo().
+	 * The file is replaced if it exists.
+	 *
+	 * @param name
+	 *            The name of the entry.
+	 * @param dest
+	 *            The file to write the contents to.
+	 */
+	public void extractEntry(String name, Path dest) throws IOException {
+		long offset = this.offset(name);
+		long size = this.index.getEntry(name).getSize();
+
+		try (FileChannel out = FileChannel.open(dest,
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			long transferred = 0;
+
+			while (transferred < size) {
+				long num = this.channel.transferTo(offset + transferred, size
+						- transferred, out);
+
+				if (num <= 0) {
+					throw new IOException("unexpected end of archive in entry '"
+							+ name + "'");
+				}
+
+				transferred += num;
+			}
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.channel.close();
+	}
+
+	private long offset(String name) throws IOException {
+		long offset = this.index.getOffset(name);
+
+		if (offset < 0) {
+			throw new FileNotFoundException("no entry '" + name
+					+ "' in the archive");
+		}
+
+		return offset;
+	}
+
+	private static class EntryInputStream extends InputStream {
+
+		private FileChannel channel;
+		private long position;
+		private long end;
+		private byte[] oneBuf = new byte[1];
+
+		EntryInputStream(FileChannel channel, long position, long end) {
+			this.channel = channel;
+			this.position = position;
+			this.end = end;
+		}
+
+		@Override
+		public int read() throws IOException {
+			int num = this.read(this.oneBuf, 0, 1);
+			return num == -1 ? -1 : this.oneBuf[0] & 0xff;
+		}
+
+		@Override
+		public int read(byte[] buf, int offset, int numToRead)
+				throws IOException {
+			if (this.position >= this.end) {
+				return -1;
+			}
+
+			if (numToRead == 0) {
+				return 0;
+			}
+
+			int num = (int) Math.min(numToRead, this.end - this.position);
+			ByteBuffer dst = ByteBuffer.wrap(buf, offset, num);
+			TarIndex.readFully(this.channel, dst, this.position);
+			this.position += num;
+
+			return num;
+		}
+
+		@Override
+		public long skip(long numToSkip) {
+			long num = Math.max(0, Math.min(numToSkip, this.end - this.position));
+			this.position += num;
+			return num;
+		}
+
+		@Override
+		public int available() {
+			return (int) Math.min(Integer.MAX_VALUE, this.end - this.position);
+		}
+
+	}
+
+}
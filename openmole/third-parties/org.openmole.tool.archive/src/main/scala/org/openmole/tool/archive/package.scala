@@ -21,7 +21,11 @@ import java.nio.file.*
 import org.openmole.tool.file.*
 import org.openmole.tool.stream.*
 import org.tukaani.xz.{LZMA2Options, XZInputStream, XZOutputStream}
+import io.airlift.compress.zstd.{ZstdInputStream, ZstdOutputStream}
+import net.jpountz.lz4.{LZ4Factory, LZ4FrameInputStream, LZ4FrameOutputStream}
+import net.jpountz.xxhash.XXHashFactory
 
+import java.util.concurrent.Executor
 import java.util.zip.ZipFile
 import scala.collection.mutable.{ListBuffer, Stack}
 import scala.io.{BufferedSource, Codec}
@@ -77,47 +81,157 @@ object XZ:
     val infile = new FileInputStream(file)
     val buffer = new Array[Byte](8192)
 
-    Iterator.continually(infile.read(buffer)).takeWhile(_ != -1).foreach { size ⇒ outxz.write(buffer, 0, size) }
+    try
+      Iterator.continually(infile.read(buffer)).takeWhile(_ != -1).foreach { size ⇒ outxz.write(buffer, 0, size) }
+      outxz.finish
+    finally
+      infile.close
+      outxz.close
+
+
+// Gzip at a given level, from 1 (fastest) to 9 (smallest)
+object GZip:
+  def outputStream(os: OutputStream, level: Int): OutputStream =
+    new java.util.zip.GZIPOutputStream(os, 64 * 1024):
+      `def`.setLevel(level)
+
+
+// Pure Java zstd (aircompressor), compressed at its default level
+object Zstd:
+  def inputStream(is: InputStream): InputStream = new ZstdInputStream(is)
+  def outputStream(os: OutputStream): OutputStream = new ZstdOutputStream(os)
+
+
+// Pure Java LZ4 frames, level 0 is the fast compressor, levels 1 to 17 the high compression one. The default instances
+// of lz4-java load a native library, the Java instances are given explicitly.
+object LZ4:
+  def inputStream(is: InputStream): InputStream =
+    new LZ4FrameInputStream(is, LZ4Factory.fastestJavaInstance().safeDecompressor(), XXHashFactory.fastestJavaInstance().hash32())
 
-    outxz.finish
+  def outputStream(os: OutputStream, level: Int = 0): OutputStream =
+    val factory = LZ4Factory.fastestJavaInstance()
+    val compressor = if (level <= 0) factory.fastCompressor() else factory.highCompressor(level)
+    new LZ4FrameOutputStream(os, LZ4FrameOutputStream.BLOCKSIZE.SIZE_4MB, -1L, compressor, XXHashFactory.fastestJavaInstance().hash32(), LZ4FrameOutputStream.FLG.Bits.BLOCK_INDEPENDENCE)
 
 
 case class ArchiveEntry(path: Seq[String], directory: Boolean)
 
 enum ArchiveType:
-  case Tar, TarGZ, TarXZ, Zip
+  case Tar, TarGZ, TarXZ, TarZstd, TarLZ4, Zip
+
+object ArchiveType:
+  type Compressed = ArchiveType.TarGZ.type | ArchiveType.TarXZ.type | ArchiveType.TarZstd.type | ArchiveType.TarLZ4.type
+  type Compression = ArchiveType.TarGZ.type | ArchiveType.TarZstd.type | ArchiveType.TarLZ4.type
+
+  // Decompress the stream of a compressed tar archive
+  def inputStream(is: InputStream, archive: Compressed): InputStream =
+    archive match
+      case ArchiveType.TarGZ => new java.util.zip.GZIPInputStream(is, 64 * 1024)
+      case ArchiveType.TarXZ => new XZInputStream(is, 100 * 1024)
+      case ArchiveType.TarZstd => Zstd.inputStream(is)
+      case ArchiveType.TarLZ4 => LZ4.inputStream(is)
+
+  // The compression named as in the preferences, gz, zstd or lz4
+  def compression(name: String): Option[Compression] =
+    name.trim.toLowerCase match
+      case "gz" | "gzip" => Some(ArchiveType.TarGZ)
+      case "zstd" => Some(ArchiveType.TarZstd)
+      case "lz4" => Some(ArchiveType.TarLZ4)
+      case _ => None
+
+  // a level that a compression can not apply is rejected rather than ignored, zstd is only compressed at its default level
+  def checkLevel(archive: Compression, level: Option[Int]) =
+    def outOfRange(l: Int, min: Int, max: Int) = throw new IllegalArgumentException(s"Compression level $l of $archive should be between $min and $max")
+
+    (archive, level) match
+      case (ArchiveType.TarZstd, Some(l)) => throw new IllegalArgumentException(s"Compression level $l can not be applied to zstd, which is compressed at its default level")
+      case (ArchiveType.TarGZ, Some(l)) if l < 1 || l > 9 => outOfRange(l, 1, 9)
+      case (ArchiveType.TarLZ4, Some(l)) if l < 0 || l > 17 => outOfRange(l, 0, 17)
+      case _ =>
+
+  // Compress the stream of a tar archive, the level applies to TarGZ (1 to 9) and TarLZ4 (0 to 17)
+  def outputStream(os: OutputStream, archive: Compression, level: Option[Int] = None): OutputStream =
+    checkLevel(archive, level)
+    archive match
+      case ArchiveType.TarGZ => level.map(GZip.outputStream(os, _)).getOrElse(new java.util.zip.GZIPOutputStream(os, 64 * 1024))
+      case ArchiveType.TarZstd => Zstd.outputStream(os)
+      case ArchiveType.TarLZ4 => LZ4.outputStream(os, level.getOrElse(0))
+
+  // Recognise the compression of a tar archive from its magic number, the stream must support mark
+  def detect(is: InputStream): ArchiveType =
+    is.mark(6)
+    val magic = try is.readNBytes(6) finally is.reset()
+    def startsWith(bytes: Int*) = magic.length >= bytes.size && bytes.zipWithIndex.forall { (b, i) => (magic(i) & 0xff) == b }
+
+    if startsWith(0x1f, 0x8b) then ArchiveType.TarGZ
+    else if startsWith(0xfd, 0x37, 0x7a, 0x58, 0x5a, 0x00) then ArchiveType.TarXZ
+    else if startsWith(0x28, 0xb5, 0x2f, 0xfd) then ArchiveType.TarZstd
+    else if startsWith(0x04, 0x22, 0x4d, 0x18) then ArchiveType.TarLZ4
+    else ArchiveType.Tar
+
+  // Decompress the stream of a tar archive, recognising its compression, an uncompressed stream is returned as is
+  def decompressedInputStream(is: InputStream): InputStream =
+    val buffered = if (is.markSupported) is else new BufferedInputStream(is)
+    detect(buffered) match
+      case c: Compressed => inputStream(buffered, c)
+      case _ => buffered
 
 extension(file: File)
   def listArchive(archive: ArchiveType): Seq[ArchiveEntry] =
     def tarEntryToArchiveEntry(e: TarEntry) = ArchiveEntry(e.getName.split('/'), e.isDirectory)
     archive match
-      case ArchiveType.Tar => withClosable(new TarInputStream(file.bufferedInputStream())) { _.entryIterator.map(tarEntryToArchiveEntry).toSeq }
+      case ArchiveType.Tar => TarIndex.build(file).getEntries.asScala.map(tarEntryToArchiveEntry).toSeq
       case ArchiveType.TarGZ => withClosable(new TarInputStream(file.gzippedBufferedInputStream)) { _.entryIterator.map(tarEntryToArchiveEntry).toSeq }
       case ArchiveType.TarXZ => withClosable(new TarInputStream(XZ.inputStream(file))) { _.entryIterator.map(tarEntryToArchiveEntry).toSeq }
+      case ArchiveType.TarZstd => withClosable(new TarInputStream(Zstd.inputStream(file.bufferedInputStream()))) { _.entryIterator.map(tarEntryToArchiveEntry).toSeq }
+      case ArchiveType.TarLZ4 => withClosable(new TarInputStream(LZ4.inputStream(file.bufferedInputStream()))) { _.entryIterator.map(tarEntryToArchiveEntry).toSeq }
       case ArchiveType.Zip => Zip.zipEntries(file)
 
-  def archive(dest: File, time: Boolean = true, archive: ArchiveType.TarGZ.type | ArchiveType.Tar.type = ArchiveType.Tar) =
+  // with a compressionPool, a TarGZ archive is compressed in parallel on the pool as a multi-member gzip, the level
+  // applies to TarGZ and TarLZ4
+  def archive(dest: File, time: Boolean = true, archive: ArchiveType.Tar.type | ArchiveType.Compression = ArchiveType.Tar, compressionPool: Option[Executor] = None, level: Option[Int] = None) =
     archive match
-      case ArchiveType.Tar => withClosable(new TarOutputStream(dest.bufferedOutputStream())) { _.archive(file, time) }
-      case ArchiveType.TarGZ => withClosable(new TarOutputStream(dest.gzippedBufferedOutputStream)) { _.archive(file, time) }
+      case c: ArchiveType.Compression => ArchiveType.checkLevel(c, level)
+      case _ =>
 
-  def extract(dest: File, overwrite: Boolean = false, archive: ArchiveType) =
-    def extractTAR(dest: File, overwrite: Boolean = false) = withClosable(new TarInputStream(file.bufferedInputStream())) { _.extract(dest, overwrite) }
-    def extractUncompressTGZ(dest: File, overwrite: Boolean = false) = withClosable(new TarInputStream(file.gzippedBufferedInputStream)) { _.extract(dest, overwrite) }
-    def extractUncompressXZ(dest: File, overwrite: Boolean = false) = withClosable(new TarInputStream(XZ.inputStream(file))) { _.extract(dest, overwrite) }
+    archive match
+      case ArchiveType.Tar => withClosable(dest.tarOutputStream) { _.archive(file, time) }
+      case ArchiveType.TarGZ => withClosable(new TarOutputStream(dest.gzOutputStream(compressionPool, level))) { _.archive(file, time) }
+      case ArchiveType.TarZstd => withClosable(new TarOutputStream(Zstd.outputStream(dest.bufferedOutputStream()))) { _.archive(file, time) }
+      case ArchiveType.TarLZ4 => withClosable(new TarOutputStream(LZ4.outputStream(dest.bufferedOutputStream(), level.getOrElse(0)))) { _.archive(file, time) }
+
+  // writers is the number of threads writing the extracted files of tar archives, see TarInputStreamDecorator.extract
+  def extract(dest: File, overwrite: Boolean = false, archive: ArchiveType, writers: Int = 1) =
+    def extractTAR(dest: File, overwrite: Boolean = false) = withClosable(new TarInputStream(file.bufferedInputStream())) { _.extract(dest, overwrite, writers) }
+    def extractUncompressTGZ(dest: File, overwrite: Boolean = false) = withClosable(new TarInputStream(file.gzippedBufferedInputStream)) { _.extract(dest, overwrite, writers) }
+    def extractUncompressXZ(dest: File, overwrite: Boolean = false) = withClosable(new TarInputStream(XZ.inputStream(file))) { _.extract(dest, overwrite, writers) }
+    def extractUncompressZstd(dest: File, overwrite: Boolean = false) = withClosable(new TarInputStream(Zstd.inputStream(file.bufferedInputStream()))) { _.extract(dest, overwrite, writers) }
+    def extractUncompressLZ4(dest: File, overwrite: Boolean = false) = withClosable(new TarInputStream(LZ4.inputStream(file.bufferedInputStream()))) { _.extract(dest, overwrite, writers) }
 
     archive match
         case ArchiveType.Tar => extractTAR(dest, overwrite = overwrite)
         case ArchiveType.TarGZ => extractUncompressTGZ(dest, overwrite = overwrite)
         case ArchiveType.TarXZ => extractUncompressXZ(dest, overwrite = overwrite)
+        case ArchiveType.TarZstd => extractUncompressZstd(dest, overwrite = overwrite)
+        case ArchiveType.TarLZ4 => extractUncompressLZ4(dest, overwrite = overwrite)
         case ArchiveType.Zip => Zip.unzip(file, dest, overwrite = overwrite)
 
-  def copyCompress(toF: File): File =
-    if (toF.isDirectory) file.archive(toF, archive = ArchiveType.TarGZ)
-    else file.copyCompressFile(toF)
+  def copyCompress(toF: File, compressionPool: Option[Executor] = None): File =
+    if (toF.isDirectory) file.archive(toF, archive = ArchiveType.TarGZ, compressionPool = compressionPool)
+    else withClosable(toF.gzOutputStream(compressionPool)) { os => Files.copy(file, os) }
     toF
 
-  //def tarOutputStream = new TarOutputStream(file.bufferedOutputStream())
+  // not buffered: the TarBuffer writes by blocks and file contents are transferred channel to channel
+  def tarOutputStream =
+    file.createParentDirectory
+    new TarOutputStream(new FileOutputStream(file))
+
+  def gzOutputStream(compressionPool: Option[Executor] = None, level: Option[Int] = None): OutputStream =
+    ArchiveType.checkLevel(ArchiveType.TarGZ, level)
+    (compressionPool, level) match
+      case (Some(pool), _) => new ParallelGZIPOutputStream(file.bufferedOutputStream(), pool, ParallelGZIPOutputStream.DEFAULT_CHUNK_SIZE, level.getOrElse(java.util.zip.Deflater.DEFAULT_COMPRESSION))
+      case (None, Some(l)) => GZip.outputStream(file.bufferedOutputStream(), l)
+      case (None, None) => file.gzippedBufferedOutputStream
 
 
 
@@ -127,7 +241,7 @@ implicit class TarOutputStreamDecorator(tos: TarOutputStream):
     entry.setSize(Files.size(f))
     entry.setMode(f.mode)
     tos.putNextEntry(entry)
-    try Files.copy(f, tos) finally tos.closeEntry
+    try tos.writeEntryContents(f) finally tos.closeEntry
 
 
   def archive(directory: File, time: Boolean = true, includeTopDirectoryName: Boolean = false) =
@@ -182,12 +296,125 @@ implicit class TarOutputStreamDecorator(tos: TarOutputStream):
         additionalCommand(e)
         tos.putNextEntry(e)
 
-        if (Files.isRegularFile(source, LinkOption.NOFOLLOW_LINKS)) try Files.copy(source, tos)
+        if (Files.isRegularFile(source, LinkOption.NOFOLLOW_LINKS)) try tos.writeEntryContents(source)
         finally tos.closeEntry
       }
     }
 
 
+private object ExtractionWriter {
+  // memory accounted for each pending write on top of its content, so that empty files are bounded as well
+  val entryOverhead = 512
+
+  // the completed writes are forgotten by batches, when the number of pending writes has doubled
+  val minDrain = 1024
+
+  // memory shared by all the extractions of the JVM, so that parallel extractions cannot exhaust the heap
+  val sharedBudget = math.max(entryOverhead.toLong, math.min(Runtime.getRuntime.maxMemory / 8, Int.MaxValue)).toInt
+  val sharedMemory = new java.util.concurrent.Semaphore(sharedBudget, true)
+}
+
+private class ExtractionWriter(writers: Int, maxPendingBytes: Int) {
+  import java.util.concurrent.*
+  import java.util.concurrent.atomic.{AtomicInteger, AtomicReference}
+  import ExtractionWriter.*
+
+  private val pool = Executors.newFixedThreadPool(writers, new ThreadFactory {
+    def newThread(r: Runnable) = {
+      val t = new Thread(r, "tar-extraction-writer")
+      t.setDaemon(true)
+      t
+    }
+  })
+
+  private val budget = math.min(maxPendingBytes, sharedBudget)
+  private val memory = new Semaphore(budget)
+  // shared memory held by this extraction, given back on shutdown for the writes that never ran
+  private val sharedHeld = new AtomicInteger()
+  private val pending = collection.mutable.HashMap[Path, Future[_]]()
+  private var nextDrain = minDrain
+  private val error = new AtomicReference[Throwable]()
+
+  // whether an entry is small enough to be written by the pool
+  def accepts(e: TarEntry) = e.getSize + entryOverhead <= budget
+
+  private def acquire(cost: Int) = {
+    memory.acquire(cost)
+    try sharedMemory.acquire(cost)
+    catch {
+      case t: Throwable ⇒
+        memory.release(cost)
+        throw t
+    }
+    sharedHeld.addAndGet(cost)
+  }
+
+  private def release(cost: Int) = {
+    sharedHeld.addAndGet(-cost)
+    sharedMemory.release(cost)
+    memory.release(cost)
+  }
+
+  // reads the content of the current entry, waiting for enough memory to be released by the writers of this extraction and of the others
+  def write(tis: TarInputStream, e: TarEntry, dest: Path, copyOptions: Seq[CopyOption]) = {
+    rethrow()
+    val cost = e.getSize.toInt + entryOverhead
+    acquire(cost)
+
+    try {
+      val content = tis.readNBytes(e.getSize.toInt)
+      if (content.length != e.getSize) throw new EOFException(s"Entry ${e.getName} ended after ${content.length} of its ${e.getSize} bytes")
+
+      val mode = e.getMode
+      val modTime = e.getModTime
+
+      val task: Runnable = () ⇒ {
+        try {
+          Files.copy(new ByteArrayInputStream(content), dest, copyOptions: _*)
+          dest.toFile.mode = mode
+          dest.setLastModified(modTime)
+        }
+        catch {
+          case t: Throwable ⇒ error.compareAndSet(null, t)
+        }
+        finally release(cost)
+      }
+
+      if (pending.size >= nextDrain) {
+        pending.filterInPlace { (_, f) ⇒ !f.isDone }
+        nextDrain = math.max(minDrain, pending.size * 2)
+      }
+
+      pending.put(dest, pool.submit(task))
+    }
+    catch {
+      case t: Throwable ⇒
+        release(cost)
+        throw t
+    }
+  }
+
+  def await(dest: Path) = pending.remove(dest).foreach(_.get)
+
+  def finish() = {
+    pending.values.foreach(_.get)
+    pending.clear()
+    rethrow()
+  }
+
+  // the writes still queued are dropped, the memory they hold is given back once the running ones are over
+  def shutdown() = {
+    pool.shutdownNow()
+    pool.awaitTermination(Long.MaxValue, TimeUnit.MILLISECONDS)
+    sharedMemory.release(sharedHeld.getAndSet(0))
+  }
+
+  private def rethrow() = error.get match {
+    case null ⇒
+    case t    ⇒ throw t
+  }
+}
+
 implicit class TarInputStreamDecorator(tis: TarInputStream) {
   def entryIterator: Iterator[TarEntry] =
     Iterator.continually(tis.getNextEntry).takeWhile(_ != null)
@@ -204,33 +431,51 @@ implicit class TarInputStreamDecorator(tis: TarInputStream) {
   }
   finally tis.close
 
-  def extract(directory: File, overwrite: Boolean = false) = {
+  // With more than one writer, the files are read on the calling thread and written by a pool of writer threads,
+  // holding at most maxPendingBytes of file contents in memory. The extractions running in parallel share a budget of
+  // an eighth of the maximum heap on top of it. Larger files are written on the calling thread.
+  def extract(directory: File, overwrite: Boolean = false, writers: Int = 1, maxPendingBytes: Int = 64 * 1024 * 1024) = {
 
     if (!directory.exists()) directory.mkdirs()
     if (!Files.isDirectory(directory)) throw new IOException(directory.toString + " is not a directory.")
 
     val directoryRights = ListBuffer[(Path, Int)]()
-
-    Iterator.continually(tis.getNextEntry).takeWhile(_ != null).foreach {
-      e ⇒
-        val dest = Paths.get(directory.toString, e.getName)
-        if (e.isDirectory) {
-          Files.createDirectories(dest)
-          directoryRights += (dest -> e.getMode)
-        }
-        else {
-          Files.createDirectories(dest.getParent)
-
-          // has the entry been marked as a symlink in the archive?
-          if (!e.getLinkName.isEmpty) Files.createSymbolicLink(dest, Paths.get(e.getLinkName))
-          // file copy from an InputStream does not support COPY_ATTRIBUTES, nor NOFOLLOW_LINKS
+    val copyOptions = Seq(StandardCopyOption.REPLACE_EXISTING).filter { _ ⇒ overwrite }
+    val writer = if (writers > 1) Some(new ExtractionWriter(writers, maxPendingBytes)) else None
+
+    try {
+      Iterator.continually(tis.getNextEntry).takeWhile(_ != null).foreach {
+        e ⇒
+          val dest = Paths.get(directory.toString, e.getName)
+          if (e.isDirectory) {
+            Files.createDirectories(dest)
+            directoryRights += (dest -> e.getMode)
+            dest.setLastModified(e.getModTime)
+          }
           else {
-            Files.copy(tis, dest, Seq(StandardCopyOption.REPLACE_EXISTING).filter { _ ⇒ overwrite }: _*)
-            dest.toFile.mode = e.getMode
+            Files.createDirectories(dest.getParent)
+            // a file written twice in the archive is written in the archive order
+            writer.foreach(_.await(dest))
+
+            // has the entry been marked as a symlink in the archive?
+            if (!e.getLinkName.isEmpty) {
+              Files.createSymbolicLink(dest, Paths.get(e.getLinkName))
+              dest.setLastModified(e.getModTime)
+            }
+            else writer match {
+              case Some(w) if w.accepts(e) ⇒ w.write(tis, e, dest, copyOptions)
+              // file copy from an InputStream does not support COPY_ATTRIBUTES, nor NOFOLLOW_LINKS
+              case _ ⇒
+                Files.copy(tis, dest, copyOptions: _*)
+                dest.toFile.mode = e.getMode
+                dest.setLastModified(e.getModTime)
+            }
           }
-        }
-        dest.setLastModified(e.getModTime)
+      }
+
+      writer.foreach(_.finish())
     }
+    finally writer.foreach(_.shutdown())
 
     // Set directory right after extraction in case some directory are not writable
     for {
@@ -0,0 +1,68 @@
+package org.openmole.tool.archive
+
+import java.io.File
+import java.nio.file.Files
+import java.util.concurrent.Executors
+
+import org.openmole.tool.file.*
+import org.scalatest._
+
+import scala.util.Random
+
+class CompressionLevelSpec extends flatspec.AnyFlatSpec with matchers.should.Matchers {
+
+  def withDirectory[T](f: File ⇒ T) = {
+    val directory = Files.createTempDirectory("compression-level-spec").toFile
+    try {
+      val random = new Random(42)
+      val source = directory / "source"
+      // text like content, on which the levels of deflate give different sizes
+      val words = Seq("openmole", "workflow", "task", "sampling", "environment", "hook", "capsule", "transition")
+      for (i ← 0 until 8) (source / s"file-$i").content = Seq.fill(50000)(words(random.nextInt(words.size)) + random.nextInt(100)).mkString(" ")
+      f(directory)
+    }
+    finally directory.recursiveDelete
+  }
+
+  def archiveAndExtract(directory: File, name: String, archive: ArchiveType.Compression, level: Option[Int], pool: Boolean = false) = {
+    val executor = Executors.newFixedThreadPool(4)
+    try {
+      val compressed = directory / s"$name.tar"
+      (directory / "source").archive(compressed, archive = archive, level = level, compressionPool = if (pool) Some(executor) else None)
+
+      val extracted = directory / name
+      compressed.extract(extracted, archive = archive)
+      for (f ← (directory / "source").listFiles) (extracted / f.getName).content should equal(f.content)
+      compressed.length
+    }
+    finally executor.shutdown()
+  }
+
+  "A gz archive" should "be compressed at the given level" in withDirectory { directory ⇒
+    val fastest = archiveAndExtract(directory, "fastest", ArchiveType.TarGZ, Some(1))
+    val smallest = archiveAndExtract(directory, "smallest", ArchiveType.TarGZ, Some(9))
+    smallest should be < fastest
+  }
+
+  it should "be compressed at the given level in parallel" in withDirectory { directory ⇒
+    val fastest = archiveAndExtract(directory, "fastest", ArchiveType.TarGZ, Some(1), pool = true)
+    val smallest = archiveAndExtract(directory, "smallest", ArchiveType.TarGZ, Some(9), pool = true)
+    smallest should be < fastest
+  }
+
+  it should "reject a level out of the deflate levels" in withDirectory { directory ⇒
+    an[IllegalArgumentException] should be thrownBy archiveAndExtract(directory, "invalid", ArchiveType.TarGZ, Some(10))
+  }
+
+  "A lz4 archive" should "be compressed at the given level" in withDirectory { directory ⇒
+    val fast = archiveAndExtract(directory, "fast", ArchiveType.TarLZ4, None)
+    val high = archiveAndExtract(directory, "high", ArchiveType.TarLZ4, Some(9))
+    high should be < fast
+  }
+
+  "A zstd archive" should "reject a compression level" in withDirectory { directory ⇒
+    archiveAndExtract(directory, "default", ArchiveType.TarZstd, None)
+    an[IllegalArgumentException] should be thrownBy archiveAndExtract(directory, "level", ArchiveType.TarZstd, Some(3))
+  }
+
+}
@@ -0,0 +1,128 @@
+package org.openmole.tool.archive
+
+import java.io.{ File, IOException }
+import java.nio.file.{ Files, Path }
+
+import org.openmole.tool.file.*
+import org.openmole.tool.stream.*
+import org.scalatest._
+
+import scala.jdk.CollectionConverters.*
+import scala.util.Random
+
+class ExtractSpec extends flatspec.AnyFlatSpec with matchers.should.Matchers {
+
+  // empty, small and large files, more files than the pending writes drained at once, and a symbolic link
+  def createTree(directory: Path) = {
+    val random = new Random(42)
+    def write(p: Path, size: Int) = {
+      Files.createDirectories(p.getParent)
+      Files.write(p, Array.fill(size)(random.nextInt().toByte))
+    }
+
+    for (i ← 0 until 3000) write(directory.resolve(s"dir-${i % 10}/file-$i"), if (i % 7 == 0) 0 else random.nextInt(2048))
+    write(directory.resolve("large/file"), 300 * 1024)
+    Files.createDirectories(directory.resolve("empty"))
+    Files.createSymbolicLink(directory.resolve("link"), directory.getFileSystem.getPath("dir-0/file-0"))
+  }
+
+  def archive(directory: Path, tar: File, format: Int) = withClosable(tar.tarOutputStream) { tos ⇒
+    def relative(p: Path) = directory.relativize(p).toString
+
+    for (p ← Files.walk(directory).iterator.asScala.toSeq.sortBy(_.toString) if p != directory) {
+      val e =
+        if (Files.isSymbolicLink(p)) {
+          val e = new TarEntry(relative(p), TarConstants.LF_SYMLINK)
+          e.setLinkName(Files.readSymbolicLink(p).toString)
+          e
+        }
+        else if (Files.isDirectory(p)) new TarEntry(relative(p) + "/")
+        else {
+          val e = new TarEntry(relative(p))
+          e.setSize(Files.size(p))
+          e
+        }
+
+      e.setTarFormat(format)
+      if (!Files.isSymbolicLink(p)) e.setMode(p.toFile.mode)
+      e.setModTime(p.toFile.lastModified)
+      tos.putNextEntry(e)
+
+      if (Files.isRegularFile(p) && !Files.isSymbolicLink(p)) try tos.writeEntryContents(p)
+      finally tos.closeEntry
+    }
+  }
+
+  def assertSameTree(expected: Path, actual: Path) = {
+    def list(d: Path) = Files.walk(d).iterator.asScala.map(d.relativize).toSeq.sortBy(_.toString)
+    list(actual) should equal(list(expected))
+
+    for (r ← list(expected)) {
+      val e = expected.resolve(r)
+      val a = actual.resolve(r)
+      Files.isSymbolicLink(a) should equal(Files.isSymbolicLink(e))
+      if (Files.isSymbolicLink(e)) Files.readSymbolicLink(a) should equal(Files.readSymbolicLink(e))
+      else if (Files.isRegularFile(e)) {
+        Files.readAllBytes(a) should equal(Files.readAllBytes(e))
+        a.toFile.mode should equal(e.toFile.mode)
+        a.toFile.lastModified should equal(e.toFile.lastModified)
+      }
+      else Files.isDirectory(a) should equal(true)
+    }
+  }
+
+  def withArchive[T](format: Int)(f: (File, Path) ⇒ T) = {
+    val directory = Files.createTempDirectory("extract-spec")
+    try {
+      val tree = directory.resolve("tree")
+      createTree(tree)
+
+      val tar = directory.resolve("tree.tar").toFile
+      archive(tree, tar, format)
+      f(tar, directory)
+    }
+    finally directory.toFile.recursiveDelete
+  }
+
+  def extractInParallel(format: Int) = withArchive(format) { (tar, directory) ⇒
+    val sequential = directory.resolve("sequential").toFile
+    val parallel = directory.resolve("parallel").toFile
+    withClosable(new TarInputStream(tar.bufferedInputStream())) { _.extract(sequential) }
+    // a small memory bound so that the writers wait for memory and the large file is written by the reader
+    withClosable(new TarInputStream(tar.bufferedInputStream())) { _.extract(parallel, writers = 4, maxPendingBytes = 256 * 1024) }
+
+    assertSameTree(sequential.toPath, parallel.toPath)
+  }
+
+  "A gnu tar archive" should "be extracted in parallel as it is sequentially" in {
+    extractInParallel(TarEntry.GNU_FORMAT)
+  }
+
+  "A ustar tar archive" should "be extracted in parallel as it is sequentially" in {
+    extractInParallel(TarEntry.USTAR_FORMAT)
+  }
+
+  "Parallel extractions" should "share the memory budget and give it back, even when they fail" in {
+    withArchive(TarEntry.GNU_FORMAT) { (tar, directory) ⇒
+      val sequential = directory.resolve("sequential")
+      withClosable(new TarInputStream(tar.bufferedInputStream())) { _.extract(sequential.toFile) }
+
+      // a file in place of one of the directories of the archive makes the extraction fail once writes are pending
+      val failing = directory.resolve("failing")
+      Files.createDirectories(failing)
+      Files.write(failing.resolve("dir-5"), Array[Byte](0))
+
+      val extractions = (0 until 4).map { i ⇒
+        new Thread(() ⇒ withClosable(new TarInputStream(tar.bufferedInputStream())) { _.extract(directory.resolve(s"parallel-$i").toFile, writers = 4) })
+      }
+      extractions.foreach(_.start())
+
+      try an[IOException] should be thrownBy withClosable(new TarInputStream(tar.bufferedInputStream())) { _.extract(failing.toFile, writers = 4) }
+      finally extractions.foreach(_.join())
+
+      for (i ← 0 until 4) assertSameTree(sequential, directory.resolve(s"parallel-$i"))
+      ExtractionWriter.sharedMemory.availablePermits should equal(ExtractionWriter.sharedBudget)
+    }
+  }
+
+}
@@ -0,0 +1,79 @@
+package org.openmole.tool.archive
+
+import java.io.{ ByteArrayInputStream, ByteArrayOutputStream }
+import java.util.concurrent.{ Executor, Executors, RejectedExecutionException }
+import java.util.zip.{ Deflater, GZIPInputStream }
+
+import org.scalatest._
+
+import scala.util.Random
+
+class ParallelGZIPOutputStreamSpec extends flatspec.AnyFlatSpec with matchers.should.Matchers {
+
+  val chunkSize = 1024
+
+  def compress(data: Array[Byte], executor: Executor, maxPending: Int = 4, byteByByte: Boolean = false) = {
+    val compressed = new ByteArrayOutputStream()
+    val os = new ParallelGZIPOutputStream(compressed, executor, chunkSize, Deflater.DEFAULT_COMPRESSION, maxPending)
+    try {
+      if (byteByByte) data.foreach(b ⇒ os.write(b))
+      else {
+        // writes of various sizes, across the chunk boundaries
+        val random = new Random(42)
+        var offset = 0
+        while (offset < data.length) {
+          val length = math.min(data.length - offset, random.nextInt(3 * chunkSize))
+          os.write(data, offset, length)
+          offset += length
+        }
+      }
+    }
+    finally os.close()
+    compressed.toByteArray
+  }
+
+  def decompress(compressed: Array[Byte]) = new GZIPInputStream(new ByteArrayInputStream(compressed)).readAllBytes()
+
+  def data(size: Int) = {
+    val random = new Random(size)
+    // compressible data
+    Array.fill(size)(('a' + random.nextInt(4)).toByte)
+  }
+
+  val sizes = Seq(0, 1, chunkSize, 16 * chunkSize, 16 * chunkSize + 100, 100 * chunkSize - 1)
+
+  def withPool[T](f: Executor ⇒ T) = {
+    val pool = Executors.newFixedThreadPool(4)
+    try f(pool)
+    finally pool.shutdown()
+  }
+
+  "A parallel gzip stream" should "be read back by GZIPInputStream" in withPool { pool ⇒
+    for (size ← sizes) decompress(compress(data(size), pool)) should equal(data(size))
+  }
+
+  it should "be read back when written byte by byte" in withPool { pool ⇒
+    for (size ← sizes) decompress(compress(data(size), pool, byteByByte = true)) should equal(data(size))
+  }
+
+  it should "be a valid gzip stream when empty" in withPool { pool ⇒
+    val compressed = compress(Array.empty, pool)
+    compressed.take(2) should equal(Array(0x1f.toByte, 0x8b.toByte))
+    decompress(compressed) should equal(Array.empty[Byte])
+  }
+
+  it should "compress the chunks rejected by the executor in the writing thread" in {
+    val rejecting: Executor = (_: Runnable) ⇒ throw new RejectedExecutionException()
+    for {
+      size ← sizes
+      maxPending ← Seq(1, 4)
+    } decompress(compress(data(size), rejecting, maxPending)) should equal(data(size))
+  }
+
+  it should "reject writes after finish" in withPool { pool ⇒
+    val os = new ParallelGZIPOutputStream(new ByteArrayOutputStream(), pool, chunkSize, Deflater.DEFAULT_COMPRESSION)
+    os.finish()
+    an[java.io.IOException] should be thrownBy os.write(1)
+  }
+
+}
@@ -0,0 +1,152 @@
+package org.openmole.tool.archive
+
+import java.io.{ File, FileNotFoundException }
+import java.nio.file.Files
+
+import org.openmole.tool.file.*
+import org.openmole.tool.stream.*
+import org.scalatest._
+
+import scala.collection.mutable.ListBuffer
+import scala.util.Random
+
+class TarIndexSpec extends flatspec.AnyFlatSpec with matchers.should.Matchers {
+
+  val longName = "dir/" + ("long-directory-name/" * 8) + "file"
+
+  // a long name (only written by the gnu format), names with leading "./" and "/", a directory, an empty entry, a
+  // duplicated entry and entries spanning several records
+  def entries(format: Int) = {
+    val random = new Random(42)
+    def content(size: Int) = Array.fill(size)(random.nextInt().toByte)
+
+    Seq(
+      "dir/" → None,
+      "dir/short" → Some(content(10)),
+      longName → Some(content(3000)),
+      "./dot/file" → Some(content(512)),
+      "/absolute/file" → Some(content(511)),
+      "empty" → Some(content(0)),
+      "duplicated" → Some(content(100)),
+      "large" → Some(content(200 * 1024)),
+      "duplicated" → Some(content(1000))
+    ).filter { case (name, _) ⇒ format == TarEntry.GNU_FORMAT || name != longName }
+  }
+
+  def archive(tar: File, format: Int) = withClosable(tar.tarOutputStream) { tos ⇒
+    for ((name, content) ← entries(format)) {
+      val e = new TarEntry(name)
+      e.setTarFormat(format)
+      content.foreach(c ⇒ e.setSize(c.length))
+      tos.putNextEntry(e)
+      try content.foreach(c ⇒ tos.write(c))
+      finally tos.closeEntry
+    }
+  }
+
+  // the entries in the order of the archive, as read from the start of the archive
+  def readSequentially(tar: File) = withClosable(new TarInputStream(tar.bufferedInputStream())) { tis ⇒
+    val read = ListBuffer[(TarEntry, Array[Byte])]()
+    var e = tis.getNextEntry
+    while (e != null) {
+      read += e → tis.readAllBytes()
+      e = tis.getNextEntry
+    }
+    read.toSeq
+  }
+
+  def withArchive[T](format: Int)(f: (File, Seq[(TarEntry, Array[Byte])]) ⇒ T) = {
+    val directory = Files.createTempDirectory("tar-index-spec").toFile
+    try {
+      val tar = new File(directory, "archive.tar")
+      archive(tar, format)
+      f(tar, readSequentially(tar))
+    }
+    finally directory.recursiveDelete
+  }
+
+  val formats = Seq(TarEntry.GNU_FORMAT, TarEntry.USTAR_FORMAT)
+
+  "A tar index" should "list the entries read by TarInputStream" in {
+    for (format ← formats) withArchive(format) { (tar, read) ⇒
+      val index = TarIndex.build(tar.toPath)
+      index.size should equal(read.size)
+
+      import scala.jdk.CollectionConverters.*
+      index.getEntries.asScala.map(_.getName) should equal(read.map(_._1.getName))
+      index.getEntries.asScala.map(_.getSize) should equal(read.map(_._1.getSize))
+    }
+  }
+
+  it should "find the entries with or without their leading and trailing slashes" in {
+    for (format ← formats) withArchive(format) { (tar, _) ⇒
+      val index = TarIndex.build(tar.toPath)
+
+      for (name ← Seq("dir", "dir/", "./dir/", "/dir")) index.getEntry(name).isDirectory should equal(true)
+      for (name ← Seq("dot/file", "./dot/file", "/dot/file")) index.getEntry(name).getSize should equal(512)
+      for (name ← Seq("absolute/file", "/absolute/file", "./absolute/file")) index.getEntry(name).getSize should equal(511)
+      if (format == TarEntry.GNU_FORMAT) index.getEntry(longName).getName should equal(longName)
+      index.getEntry("missing") should equal(null)
+      index.getOffset("missing") should equal(-1)
+    }
+  }
+
+  it should "index the last of the duplicated entries" in {
+    for (format ← formats) withArchive(format) { (tar, _) ⇒
+      TarIndex.build(tar.toPath).getEntry("duplicated").getSize should equal(1000)
+    }
+  }
+
+  "A tar random access reader" should "read the contents read by TarInputStream" in {
+    for (format ← formats) withArchive(format) { (tar, read) ⇒
+      // the contents of the last entry of each name, as left by an extraction
+      val contents = read.map { case (e, c) ⇒ e.getName → c }.toMap
+
+      withClosable(new TarRandomAccessReader(tar.toPath)) { reader ⇒
+        for ((name, content) ← contents) {
+          withClosable(reader.getInputStream(name)) { _.readAllBytes() } should equal(content)
+
+          val extracted = new File(tar.getParentFile, "extracted")
+          reader.extractEntry(name, extracted.toPath)
+          Files.readAllBytes(extracted.toPath) should equal(content)
+        }
+      }
+    }
+  }
+
+  it should "read several entries at the same time" in {
+    withArchive(TarEntry.GNU_FORMAT) { (tar, read) ⇒
+      val contents = read.map { case (e, c) ⇒ e.getName → c }.toMap
+
+      withClosable(new TarRandomAccessReader(tar.toPath, TarIndex.build(tar.toPath))) { reader ⇒
+        val large = reader.getInputStream("large")
+        val long = reader.getInputStream(longName)
+
+        val buffer = new Array[Byte](1000)
+        val readLarge = new java.io.ByteArrayOutputStream()
+        val readLong = new java.io.ByteArrayOutputStream()
+
+        var done = false
+        while (!done) {
+          val l1 = large.read(buffer)
+          if (l1 > 0) readLarge.write(buffer, 0, l1)
+          val l2 = long.read(buffer)
+          if (l2 > 0) readLong.write(buffer, 0, l2)
+          done = l1 < 0 && l2 < 0
+        }
+
+        readLarge.toByteArray should equal(contents("large"))
+        readLong.toByteArray should equal(contents(longName))
+      }
+    }
+  }
+
+  it should "fail on a missing entry" in {
+    withArchive(TarEntry.GNU_FORMAT) { (tar, _) ⇒
+      withClosable(new TarRandomAccessReader(tar.toPath)) { reader ⇒
+        a[FileNotFoundException] should be thrownBy reader.getInputStream("missing")
+      }
+    }
+  }
+
+}
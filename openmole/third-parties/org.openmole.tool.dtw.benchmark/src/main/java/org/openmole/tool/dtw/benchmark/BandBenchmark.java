@@ -0,0 +1,80 @@
+/*
+ * BandBenchmark.java
+ */
+
+package org.openmole.tool.dtw.benchmark;
+
+import org.openmole.tool.dtw.dtw.DTW;
+import org.openmole.tool.dtw.dtw.LinearWindow;
+import org.openmole.tool.dtw.dtw.ParallelogramWindow;
+import org.openmole.tool.dtw.dtw.WarpPath;
+import org.openmole.tool.dtw.timeseries.TimeSeries;
+import org.openmole.tool.dtw.util.DistanceFunction;
+import org.openmole.tool.dtw.util.DistanceFunctionFactory;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+
+// Dynamic Time Warping constrained to a band around the diagonal, the window is built by each invocation as it is
+//    by the callers of DTW.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BandBenchmark
+{
+   @Param({"1000", "10000", "100000"})
+   public int length;
+
+   @Param({"10", "100"})
+   public int width;
+
+   @Param({Inputs.SINE, Inputs.RANDOM_WALK})
+   public String input;
+
+   private TimeSeries tsI;
+   private TimeSeries tsJ;
+   private final DistanceFunction distFn = DistanceFunctionFactory.EUCLIDEAN_DIST_FN;
+
+
+   @Setup
+   public void setup()
+   {
+      final TimeSeries[] pair = Inputs.pair(input, length);
+      tsI = pair[0];
+      tsJ = pair[1];
+   }
+
+
+   @Benchmark
+   public double linearWindowDistance()
+   {
+      return DTW.getWarpDistBetween(tsI, tsJ, new LinearWindow(tsI, tsJ, width), distFn);
+   }
+
+
+   @Benchmark
+   public WarpPath linearWindowPath()
+   {
+      return DTW.getWarpPathBetween(tsI, tsJ, new LinearWindow(tsI, tsJ, width), distFn);
+   }
+
+
+   @Benchmark
+   public double parallelogramWindowDistance()
+   {
+      return DTW.getWarpDistBetween(tsI, tsJ, new ParallelogramWindow(tsI, tsJ, width), distFn);
+   }
+
+
+   @Benchmark
+   public WarpPath parallelogramWindowPath()
+   {
+      return DTW.getWarpPathBetween(tsI, tsJ, new ParallelogramWindow(tsI, tsJ, width), distFn);
+   }
+
+}  // end class BandBenchmark
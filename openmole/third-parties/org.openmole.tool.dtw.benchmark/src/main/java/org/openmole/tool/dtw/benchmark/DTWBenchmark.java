@@ -0,0 +1,75 @@
+/*
+ * DTWBenchmark.java
+ */
+
+package org.openmole.tool.dtw.benchmark;
+
+import org.openmole.tool.dtw.dtw.DTW;
+import org.openmole.tool.dtw.dtw.TimeWarpInfo;
+import org.openmole.tool.dtw.dtw.WarpPath;
+import org.openmole.tool.dtw.timeseries.TimeSeries;
+import org.openmole.tool.dtw.util.DistanceFunction;
+import org.openmole.tool.dtw.util.DistanceFunctionFactory;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+
+// Full Dynamic Time Warping, the warp path needs the whole length^2 cost matrix so the lengths stay moderate.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DTWBenchmark
+{
+   @Param({"100", "1000", "4000"})
+   public int length;
+
+   @Param({Inputs.SINE, Inputs.RANDOM_WALK})
+   public String input;
+
+   private TimeSeries tsI;
+   private TimeSeries tsJ;
+   private final DistanceFunction distFn = DistanceFunctionFactory.EUCLIDEAN_DIST_FN;
+
+
+   @Setup
+   public void setup()
+   {
+      final TimeSeries[] pair = Inputs.pair(input, length);
+      tsI = pair[0];
+      tsJ = pair[1];
+   }
+
+
+   @Benchmark
+   public double distance()
+   {
+      return DTW.getWarpDistBetween(tsI, tsJ, distFn);
+   }
+
+
+   @Benchmark
+   public double boundedDistance()
+   {
+      return DTW.getWarpDistBetween(tsI, tsJ, distFn, Double.POSITIVE_INFINITY);
+   }
+
+
+   @Benchmark
+   public WarpPath warpPath()
+   {
+      return DTW.getWarpPathBetween(tsI, tsJ, distFn);
+   }
+
+
+   @Benchmark
+   public TimeWarpInfo warpInfo()
+   {
+      return DTW.getWarpInfoBetween(tsI, tsJ, distFn);
+   }
+
+}  // end class DTWBenchmark
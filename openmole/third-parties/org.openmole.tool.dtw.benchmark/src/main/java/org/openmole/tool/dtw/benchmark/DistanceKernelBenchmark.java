@@ -0,0 +1,83 @@
+/*
+ * DistanceKernelBenchmark.java
+ */
+
+package org.openmole.tool.dtw.benchmark;
+
+import org.openmole.tool.dtw.timeseries.TimeSeries;
+import org.openmole.tool.dtw.util.DistanceFunction;
+import org.openmole.tool.dtw.util.DistanceFunctionFactory;
+import org.openmole.tool.dtw.util.DistanceKernel;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+
+// The local costs of a band of the cost matrix, computed through
+//    DistanceFunction.calcDistance(getMeasurementVector(i), getMeasurementVector(j)) and through the DistanceKernel
+//    picked for the distance function.  Each invocation sums the costs of the band, the results are per band.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DistanceKernelBenchmark
+{
+   // CONSTANTS
+   private static final int BAND_RADIUS = 50;
+
+
+   @Param({"1000", "10000", "100000"})
+   public int length;
+
+   @Param({"1", "3"})
+   public int dimensions;
+
+   @Param({"EuclideanDistance", "ManhattanDistance", "BinaryDistance"})
+   public String distance;
+
+   private TimeSeries tsI;
+   private TimeSeries tsJ;
+   private DistanceFunction distFn;
+
+
+   @Setup
+   public void setup()
+   {
+      final Random random = new Random(42);
+      tsI = Inputs.randomWalk(length, dimensions, random);
+      tsJ = Inputs.randomWalk(length, dimensions, random);
+      distFn = DistanceFunctionFactory.getDistFnByName(distance);
+   }
+
+
+   @Benchmark
+   public double vectors()
+   {
+      double sum = 0.0;
+      for (int i=0; i<tsI.size(); i++)
+         for (int j=Math.max(0, i-BAND_RADIUS); j<=Math.min(tsJ.size()-1, i+BAND_RADIUS); j++)
+            sum += distFn.calcDistance(tsI.getMeasurementVector(i), tsJ.getMeasurementVector(j));
+
+      return sum;
+   }
+
+
+   // The kernel is picked by each invocation, as it is once per warp by DTW.
+   @Benchmark
+   public double kernel()
+   {
+      final DistanceKernel kernel = DistanceKernel.getKernel(distFn, tsI.getMeasurements(), tsI.numOfDimensions(),
+                                                             tsJ.getMeasurements(), tsJ.numOfDimensions());
+      double sum = 0.0;
+      for (int i=0; i<tsI.size(); i++)
+         for (int j=Math.max(0, i-BAND_RADIUS); j<=Math.min(tsJ.size()-1, i+BAND_RADIUS); j++)
+            sum += kernel.calcDistance(i, j);
+
+      return sum;
+   }
+
+}  // end class DistanceKernelBenchmark
@@ -0,0 +1,37 @@
+/*
+ * DtwBenchmarks.java
+ */
+
+package org.openmole.tool.dtw.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+
+// Runs the dtw benchmarks with the GC profiler, so the allocation rate (gc.alloc.rate.norm, bytes per operation) is
+//    reported next to the throughput:
+//
+//    sbt "openmoleDTWBenchmark/Jmh/runMain org.openmole.tool.dtw.benchmark.DtwBenchmarks [regexp] [result.json]"
+//
+// 'regexp' selects the benchmarks (all of them by default, e.g. "FastDTWBenchmark.distance"), the results are also
+//    written to 'result.json' if given so that successive runs can be compared.  The usual JMH command line is
+//    available through "openmoleDTWBenchmark/Jmh/run -prof gc ...".
+public class DtwBenchmarks
+{
+   public static void main(String[] args) throws RunnerException
+   {
+      final ChainedOptionsBuilder options = new OptionsBuilder()
+         .include(DtwBenchmarks.class.getPackage().getName() + "." + ((args.length > 0) ? args[0] : ""))
+         .addProfiler(GCProfiler.class);
+
+      if (args.length > 1)
+         options.resultFormat(ResultFormatType.JSON).result(args[1]);
+
+      new Runner(options.build()).run();
+   }  // end main(.)
+
+}  // end class DtwBenchmarks
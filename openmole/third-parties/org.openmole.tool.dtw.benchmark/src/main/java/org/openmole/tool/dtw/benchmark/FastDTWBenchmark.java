@@ -0,0 +1,72 @@
+/*
+ * FastDTWBenchmark.java
+ */
+
+package org.openmole.tool.dtw.benchmark;
+
+import org.openmole.tool.dtw.dtw.DtwWorkspace;
+import org.openmole.tool.dtw.dtw.FastDTW;
+import org.openmole.tool.dtw.dtw.WarpPath;
+import org.openmole.tool.dtw.timeseries.TimeSeries;
+import org.openmole.tool.dtw.util.DistanceFunction;
+import org.openmole.tool.dtw.util.DistanceFunctionFactory;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FastDTWBenchmark
+{
+   @Param({"1000", "10000", "100000"})
+   public int length;
+
+   @Param({"1", "10", "30"})
+   public int radius;
+
+   @Param({Inputs.SINE, Inputs.RANDOM_WALK})
+   public String input;
+
+   private TimeSeries tsI;
+   private TimeSeries tsJ;
+   private DtwWorkspace workspace;
+   private final DistanceFunction distFn = DistanceFunctionFactory.EUCLIDEAN_DIST_FN;
+
+
+   @Setup
+   public void setup()
+   {
+      final TimeSeries[] pair = Inputs.pair(input, length);
+      tsI = pair[0];
+      tsJ = pair[1];
+      workspace = new DtwWorkspace(length);
+   }
+
+
+   @Benchmark
+   public double distance()
+   {
+      return FastDTW.getWarpDistBetween(tsI, tsJ, radius, distFn);
+   }
+
+
+   @Benchmark
+   public double workspaceDistance()
+   {
+      return workspace.getWarpDistBetween(tsI, tsJ, radius, distFn);
+   }
+
+
+   @Benchmark
+   public WarpPath warpPath()
+   {
+      return FastDTW.getWarpPathBetween(tsI, tsJ, radius, distFn);
+   }
+
+}  // end class FastDTWBenchmark
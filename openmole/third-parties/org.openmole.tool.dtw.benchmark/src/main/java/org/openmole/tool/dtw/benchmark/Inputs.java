@@ -0,0 +1,67 @@
+/*
+ * Inputs.java
+ */
+
+package org.openmole.tool.dtw.benchmark;
+
+import org.openmole.tool.dtw.timeseries.SineWave;
+import org.openmole.tool.dtw.timeseries.TimeSeries;
+
+import java.util.Random;
+
+
+// Synthetic inputs of the benchmarks: noiseless sine waves and random walks drawn from a fixed seed, so that every
+//    run warps the same series.
+final class Inputs
+{
+   // CONSTANTS
+   static final String SINE = "sine";
+   static final String RANDOM_WALK = "randomWalk";
+
+   private static final long SEED = 42;
+
+
+
+   private Inputs()
+   {
+   }
+
+
+   // Two different series of the given kind ('sine' or 'randomWalk') and length.
+   static TimeSeries[] pair(String kind, int length)
+   {
+      if (SINE.equals(kind))
+         return new TimeSeries[] {new SineWave(length, 4, 0.0), new SineWave(length, 5, 0.0)};
+      else if (RANDOM_WALK.equals(kind))
+      {
+         final Random random = new Random(SEED);
+         return new TimeSeries[] {randomWalk(length, random), randomWalk(length, random)};
+      }
+      else
+         throw new IllegalArgumentException("Unknown input kind " + kind);
+   }  // end pair(..)
+
+
+   static TimeSeries randomWalk(int length, Random random)
+   {
+      return randomWalk(length, 1, random);
+   }
+
+
+   // A random walk on each of the dimensions.
+   static TimeSeries randomWalk(int length, int numOfDimensions, Random random)
+   {
+      final TimeSeries walk = new TimeSeries(numOfDimensions);
+      final double[] point = new double[numOfDimensions];
+
+      for (int t=0; t<length; t++)
+      {
+         for (int d=0; d<numOfDimensions; d++)
+            point[d] += random.nextGaussian();
+         walk.addLast(t, point);
+      }  // end for loop
+
+      return walk;
+   }  // end randomWalk(..)
+
+}  // end class Inputs
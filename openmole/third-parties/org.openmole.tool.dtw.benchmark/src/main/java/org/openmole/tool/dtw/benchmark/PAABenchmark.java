@@ -0,0 +1,58 @@
+/*
+ * PAABenchmark.java
+ */
+
+package org.openmole.tool.dtw.benchmark;
+
+import org.openmole.tool.dtw.timeseries.PAA;
+import org.openmole.tool.dtw.timeseries.TimeSeries;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+
+// PAA approximations as built by FastDTW: a single halving, and every halving down to a
+//    couple of points.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PAABenchmark
+{
+   @Param({"1000", "100000", "1000000"})
+   public int length;
+
+   @Param({Inputs.SINE, Inputs.RANDOM_WALK})
+   public String input;
+
+   private TimeSeries ts;
+
+
+   @Setup
+   public void setup()
+   {
+      ts = Inputs.pair(input, length)[0];
+   }
+
+
+   @Benchmark
+   public PAA halve()
+   {
+      return new PAA(ts, ts.size()/2);
+   }
+
+
+   @Benchmark
+   public TimeSeries allResolutions()
+   {
+      TimeSeries shrunk = ts;
+      while (shrunk.size() > 2)
+         shrunk = new PAA(shrunk, shrunk.size()/2);
+
+      return shrunk;
+   }  // end allResolutions()
+
+}  // end class PAABenchmark
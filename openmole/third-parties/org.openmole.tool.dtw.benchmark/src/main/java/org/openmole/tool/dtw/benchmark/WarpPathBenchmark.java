@@ -0,0 +1,79 @@
+/*
+ * WarpPathBenchmark.java
+ */
+
+package org.openmole.tool.dtw.benchmark;
+
+import org.openmole.tool.dtw.dtw.FastDTW;
+import org.openmole.tool.dtw.dtw.WarpPath;
+import org.openmole.tool.dtw.matrix.ColMajorCell;
+import org.openmole.tool.dtw.util.DistanceFunctionFactory;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+
+// Reconstruction of a warp path cell by cell (as done by the backtracking of DTW) and traversal of its cells (as
+//    done by ExpandedResWindow and DTW.calcWarpCost).
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WarpPathBenchmark
+{
+   @Param({"1000", "100000"})
+   public int length;
+
+   @Param({Inputs.SINE, Inputs.RANDOM_WALK})
+   public String input;
+
+   private int[] pathI;
+   private int[] pathJ;
+   private WarpPath path;
+
+
+   @Setup
+   public void setup()
+   {
+      final org.openmole.tool.dtw.timeseries.TimeSeries[] pair = Inputs.pair(input, length);
+      path = FastDTW.getWarpPathBetween(pair[0], pair[1], 1, DistanceFunctionFactory.EUCLIDEAN_DIST_FN);
+
+      pathI = new int[path.size()];
+      pathJ = new int[path.size()];
+      for (int p=0; p<path.size(); p++)
+      {
+         final ColMajorCell cell = path.get(p);
+         pathI[p] = cell.getCol();
+         pathJ[p] = cell.getRow();
+      }  // end for loop
+   }  // end setup()
+
+
+   @Benchmark
+   public WarpPath reconstruct()
+   {
+      final WarpPath reconstructed = new WarpPath(pathI.length);
+      for (int p=pathI.length-1; p>=0; p--)
+         reconstructed.addFirst(pathI[p], pathJ[p]);
+
+      return reconstructed;
+   }  // end reconstruct()
+
+
+   @Benchmark
+   public long traverse()
+   {
+      long sum = 0;
+      for (int p=0; p<path.size(); p++)
+      {
+         final ColMajorCell cell = path.get(p);
+         sum += cell.getCol()+cell.getRow();
+      }  // end for loop
+
+      return sum;
+   }  // end traverse()
+
+}  // end class WarpPathBenchmark
@@ -1,68 +0,0 @@
-/*
- * FastDtwTest.java   Jul 14, 2004
- *
- * Copyright (c) 2004 Stan Salvador
- * stansalvador@hotmail.com
- */
-
-package org.openmole.tool.dtw;
-
-import org.openmole.tool.dtw.timeseries.TimeSeries;
-import org.openmole.tool.dtw.util.DistanceFunction;
-import org.openmole.tool.dtw.util.DistanceFunctionFactory;
-import org.openmole.tool.dtw.dtw.TimeWarpInfo;
-
-
-/**
- * This class contains a main method that executes the FastDTW algorithm on two
- * time series with a specified radius.
- *
- * @author Stan Salvador, stansalvador@hotmail.com
- * @since Jul 14, 2004
- */
-public class FastDtwTest
-{
-   /**
-    * This main method executes the FastDTW algorithm on two time series with a
-    * specified radius. The time series arguments are file names for files that
-    * contain one measurement per line (time measurements are an optional value
-    * in the first column). After calculating the warp path, the warp
-    * path distance will be printed to standard output, followed by the path
-    * in the format "(0,0),(1,0),(2,1)..." were each pair of numbers in
-    * parenthesis are indexes of the first and second time series that are
-    * linked in the warp path
-    *
-    * @param args  command line arguments (see method comments)
-    */
-      public static void main(String[] args)
-      {
-         if (args.length!=3 && args.length!=4)
-         {
-            System.out.println("USAGE:  java FastDtwTest timeSeries1 timeSeries2 radius [EuclideanDistance|ManhattanDistance|BinaryDistance]");
-            System.exit(1);
-         }
-         else
-         {
-            final TimeSeries tsI = new TimeSeries(args[0], false, false, ',');
-            final TimeSeries tsJ = new TimeSeries(args[1], false, false, ',');
-            
-            final DistanceFunction distFn;
-            if (args.length < 4)
-            {
-               distFn = DistanceFunctionFactory.getDistFnByName("EuclideanDistance"); 
-            }
-            else
-            {
-               distFn = DistanceFunctionFactory.getDistFnByName(args[3]);
-            }   // end if
-            
-            final TimeWarpInfo info = org.openmole.tool.dtw.dtw.FastDTW.getWarpInfoBetween(tsI, tsJ, Integer.parseInt(args[2]), distFn);
-
-            System.out.println("Warp Distance: " + info.getDistance());
-            System.out.println("Warp Path:     " + info.getPath());
-         }  // end if
-
-      }  // end main()
-
-
-}  // end class FastDtwTest
@@ -9,24 +9,27 @@ package org.openmole.tool.dtw.dtw;
 
 import org.openmole.tool.dtw.timeseries.TimeSeries;
 import org.openmole.tool.dtw.util.DistanceFunction;
-import org.openmole.tool.dtw.matrix.ColMajorCell;
+import org.openmole.tool.dtw.util.DistanceKernel;
 
-import java.util.Iterator;
+import java.util.concurrent.ForkJoinPool;
 
 
 public class DTW
 {
+   // CONSTANTS
+   private static final double BOUND_TOLERANCE = 1e-12;
+
 
    // FUNCTIONS
    public static double calcWarpCost(WarpPath path, TimeSeries tsI, TimeSeries tsJ, DistanceFunction distFn)
    {
       double totalCost = 0.0;
+      final DistanceKernel kernel = getKernel(tsI, tsJ, distFn);
 
       for (int p=0; p<path.size(); p++)
       {
          final org.openmole.tool.dtw.matrix.ColMajorCell currWarp = path.get(p);
-         totalCost += distFn.calcDistance(tsI.getMeasurementVector(currWarp.getCol()),
-                                          tsJ.getMeasurementVector(currWarp.getRow()));
+         totalCost += kernel.calcDistance(currWarp.getCol(), currWarp.getRow());
       }
 
       return totalCost;
@@ -49,11 +52,12 @@ public class DTW
       double[] currCol = new double[tsJ.size()];
       final int maxI = tsI.size()-1;
       final int maxJ = tsJ.size()-1;
+      final DistanceKernel kernel = getKernel(tsI, tsJ, distFn);
 
       // Calculate the values for the first column, from the bottom up.
-      currCol[0] = distFn.calcDistance(tsI.getMeasurementVector(0), tsJ.getMeasurementVector(0));  // first cell
+      currCol[0] = kernel.calcDistance(0, 0);  // first cell
       for (int j=1; j<=maxJ; j++)  // the rest of the first column
-         currCol[j] = currCol[j-1] + distFn.calcDistance(tsI.getMeasurementVector(0), tsJ.getMeasurementVector(j));
+         currCol[j] = currCol[j-1] + kernel.calcDistance(0, j);
 
       for (int i=1; i<=maxI; i++)   // i = columns
       {
@@ -64,13 +68,13 @@ public class DTW
 
          // Calculate the value for the bottom row of the current column
          //    (i,0) = LocalCost(i,0) + GlobalCost(i-1,0)
-         currCol[0] = lastCol[0] + distFn.calcDistance(tsI.getMeasurementVector(i), tsJ.getMeasurementVector(0));
+         currCol[0] = lastCol[0] + kernel.calcDistance(i, 0);
 
          for (int j=1; j<=maxJ; j++)  // j = rows
          {
             // (i,j) = LocalCost(i,j) + minGlobalCost{(i-1,j),(i-1,j-1),(i,j-1)}
             final double minGlobalCost = Math.min(lastCol[j], Math.min(lastCol[j-1], currCol[j-1]));
-            currCol[j] = minGlobalCost + distFn.calcDistance(tsI.getMeasurementVector(i), tsJ.getMeasurementVector(j));
+            currCol[j] = minGlobalCost + kernel.calcDistance(i, j);
          }  // end for loop
       }  // end for loop
 
@@ -81,17 +85,32 @@ public class DTW
 
    public static WarpPath getWarpPathBetween(TimeSeries tsI, TimeSeries tsJ, DistanceFunction distFn)
    {
-      return DynamicTimeWarp(tsI, tsJ, distFn).getPath();
+      return DynamicTimeWarp(tsI, tsJ, distFn, null).getPath();
    }
 
 
    public static TimeWarpInfo getWarpInfoBetween(TimeSeries tsI, TimeSeries tsJ, DistanceFunction distFn)
    {
-      return DynamicTimeWarp(tsI, tsJ, distFn);
+      return DynamicTimeWarp(tsI, tsJ, distFn, null);
+   }
+
+
+   // The cost matrix is filled in parallel in 'pool' by anti-diagonal wavefronts of tiles (see Wavefront), the
+   //    result is identical to getWarpPathBetween(tsI, tsJ, distFn).
+   public static WarpPath getWarpPathBetween(TimeSeries tsI, TimeSeries tsJ, DistanceFunction distFn, ForkJoinPool pool)
+   {
+      return DynamicTimeWarp(tsI, tsJ, distFn, pool).getPath();
+   }
+
+
+   public static TimeWarpInfo getWarpInfoBetween(TimeSeries tsI, TimeSeries tsJ, DistanceFunction distFn,
+                                                 ForkJoinPool pool)
+   {
+      return DynamicTimeWarp(tsI, tsJ, distFn, pool);
    }
 
 
-   private static TimeWarpInfo DynamicTimeWarp(TimeSeries tsI, TimeSeries tsJ, DistanceFunction distFn)
+   private static TimeWarpInfo DynamicTimeWarp(TimeSeries tsI, TimeSeries tsJ, DistanceFunction distFn, ForkJoinPool pool)
    {
       //     COST MATRIX:
       //   5|_|_|_|_|_|_|E| E = min Global Cost
@@ -108,30 +127,29 @@ public class DTW
       final int maxI = tsI.size()-1;
       final int maxJ = tsJ.size()-1;
 
-      // Calculate the values for the first column, from the bottom up.
-      costMatrix[0][0] = distFn.calcDistance(tsI.getMeasurementVector(0),
-                                       tsJ.getMeasurementVector(0));
-      for (int j=1; j<=maxJ; j++)
-         costMatrix[0][j] = costMatrix[0][j-1] + distFn.calcDistance(tsI.getMeasurementVector(0),
-                                                                     tsJ.getMeasurementVector(j));
-
-      for (int i=1; i<=maxI; i++)   // i = columns
+      new Wavefront(tsI, tsJ, distFn, null)
       {
-         // Calculate the value for the bottom row of the current column
-         //    (i,0) = LocalCost(i,0) + GlobalCost(i-1,0)
-         costMatrix[i][0] = costMatrix[i-1][0] + distFn.calcDistance(tsI.getMeasurementVector(i),
-                                                                     tsJ.getMeasurementVector(0));
-
-         for (int j=1; j<=maxJ; j++)  // j = rows
+         void fillColumn(DistanceKernel kernel, int i, int jFrom, int jTo)
          {
-            // (i,j) = LocalCost(i,j) + minGlobalCost{(i-1,j),(i-1,j-1),(i,j-1)}
-            final double minGlobalCost = Math.min(costMatrix[i-1][j],
-                                                  Math.min(costMatrix[i-1][j-1],
-                                                           costMatrix[i][j-1]));
-            costMatrix[i][j] = minGlobalCost + distFn.calcDistance(tsI.getMeasurementVector(i),
-                                                                   tsJ.getMeasurementVector(j));
-         }  // end for loop
-      }  // end for loop
+            for (int j=jFrom; j<=jTo; j++)  // j = rows
+            {
+               if ( (i==0) && (j==0) )   // first cell
+                  costMatrix[0][0] = kernel.calcDistance(0, 0);
+               else if (i == 0)          // first column, from the bottom up
+                  costMatrix[0][j] = costMatrix[0][j-1] + kernel.calcDistance(0, j);
+               else if (j == 0)          // (i,0) = LocalCost(i,0) + GlobalCost(i-1,0)
+                  costMatrix[i][0] = costMatrix[i-1][0] + kernel.calcDistance(i, 0);
+               else
+               {
+                  // (i,j) = LocalCost(i,j) + minGlobalCost{(i-1,j),(i-1,j-1),(i,j-1)}
+                  final double minGlobalCost = Math.min(costMatrix[i-1][j],
+                                                        Math.min(costMatrix[i-1][j-1],
+                                                                 costMatrix[i][j-1]));
+                  costMatrix[i][j] = minGlobalCost + kernel.calcDistance(i, j);
+               }  // end if
+            }  // end for loop
+         }  // end fillColumn(...)
+      }.fill(pool);
 
 /*
 // writes a section of the cost org.openmole.tool.dwt.matrix to a file
@@ -218,73 +236,106 @@ catch (Exception e)
 
 
 
+   // When only the distance is needed, the window is filled keeping only the last 2 columns of the cost matrix
+   //    (O(window height) memory), no cost matrix of the size of the window and no swap file are needed.
    public static double getWarpDistBetween(TimeSeries tsI, TimeSeries tsJ, SearchWindow window, DistanceFunction distFn)
    {
-      //     COST MATRIX:
-      //   5|_|_|_|_|_|_|E| E = min Global Cost
-      //   4|_|_|_|_|_|_|_| S = Start point
-      //   3|_|_|_|_|_|_|_| each cell = min global cost to get to that point
-      // j 2|_|_|_|_|_|_|_|
-      //   1|_|_|_|_|_|_|_|
-      //   0|S|_|_|_|_|_|_|
-      //     0 1 2 3 4 5 6
-      //            i
-      //   access is M(i,j)... column-row
-      final CostMatrix costMatrix = new PartialWindowMatrix(window);
+      return sweepWindow(window, getKernel(tsI, tsJ, distFn), null, Double.POSITIVE_INFINITY);
+   }  // end getWarpDistBetween(...)
+
+
+   // Dynamic Time Warping that is abandoned as soon as the warp distance is certain to be greater than 'bestSoFar'
+   //    (nearest neighbour search, rejection sampling...), Double.POSITIVE_INFINITY is then returned.  The cascading
+   //    LB_Kim and LB_Keogh lower bounds (see LowerBounds) are checked before the cost matrix is filled, then after
+   //    each column the minimum cost of the column plus the LB_Keogh bounds of the remaining columns is checked.
+   //    Only 2 columns of the cost matrix are stored.
+   public static double getWarpDistBetween(TimeSeries tsI, TimeSeries tsJ, DistanceFunction distFn, double bestSoFar)
+   {
+      return getWarpDistBetween(tsI, tsJ, new FullWindow(tsI, tsJ), distFn, bestSoFar);
+   }
+
+
+   public static double getWarpDistBetween(TimeSeries tsI, TimeSeries tsJ, SearchWindow window, DistanceFunction distFn,
+                                           double bestSoFar)
+   {
+      final DistanceKernel kernel = getKernel(tsI, tsJ, distFn);
       final int maxI = tsI.size()-1;
       final int maxJ = tsJ.size()-1;
 
-      // Get an iterator that traverses the window cells in the order that the cost org.openmole.tool.dwt.matrix is filled.
-      //    (first to last row (1..maxI), bottom to top (1..MaxJ)
-      final Iterator matrixIterator = window.iterator();
+      if (exceeds(LowerBounds.kim(kernel, maxI, maxJ), bestSoFar))
+         return Double.POSITIVE_INFINITY;
 
-      while (matrixIterator.hasNext())
+      // remainingBounds[i] = lower bound of the cost of the columns i..maxI
+      final double[] remainingBounds = new double[maxI+2];
+      final double[] columnBounds = LowerBounds.keoghColumns(tsI, tsJ, window, distFn);
+      if (columnBounds != null)
       {
-         final ColMajorCell currentCell = (ColMajorCell)matrixIterator.next();  // current cell being filled
-         final int i = currentCell.getCol();
-         final int j = currentCell.getRow();
+         for (int i=maxI; i>=0; i--)
+            remainingBounds[i] = remainingBounds[i+1] + columnBounds[i];
 
-         if ( (i==0) && (j==0) )      // bottom left cell (first row AND first column)
-            costMatrix.put(i, j, distFn.calcDistance(tsI.getMeasurementVector(0), tsJ.getMeasurementVector(0)));
-         else if (i == 0)             // first column
-         {
-            costMatrix.put(i, j, distFn.calcDistance(tsI.getMeasurementVector(0), tsJ.getMeasurementVector(j)) +
-                                 costMatrix.get(i, j-1));
-         }
-         else if (j == 0)             // first row
-         {
-            costMatrix.put(i, j, distFn.calcDistance(tsI.getMeasurementVector(i), tsJ.getMeasurementVector(0)) +
-                                 costMatrix.get(i-1, j));
-         }
-         else                         // not first column or first row
-         {
-            final double minGlobalCost = Math.min(costMatrix.get(i-1, j),
-                                                  Math.min(costMatrix.get(i-1, j-1),
-                                                           costMatrix.get(i, j-1)));
-            costMatrix.put(i, j, minGlobalCost + distFn.calcDistance(tsI.getMeasurementVector(i),
-                                                                     tsJ.getMeasurementVector(j)));
-         }  // end if
-      }  // end while loop
+         if (exceeds(remainingBounds[0], bestSoFar))
+            return Double.POSITIVE_INFINITY;
+      }  // end if
 
-      // Minimum Cost is at (maxI, maxJ)
-      return costMatrix.get(maxI, maxJ);
+      final double minimumCost = sweepWindow(window, kernel, remainingBounds, bestSoFar);
+      if (minimumCost > bestSoFar)
+         return Double.POSITIVE_INFINITY;
+      else
+         return minimumCost;
+   }  // end getWarpDistBetween(.....)
 
-   }  // end getWarpDistBetween(...)
+
+   // The lower bounds sum the local costs in another order than the cost matrix does, they may be rounded a few ulps
+   //    above the warp distance:  a warp is only abandoned when a bound exceeds 'bestSoFar' by more than a relative
+   //    BOUND_TOLERANCE.
+   private static boolean exceeds(double bound, double bestSoFar)
+   {
+      return bound > bestSoFar*(1.0+BOUND_TOLERANCE);
+   }
 
 
    public static WarpPath getWarpPathBetween(TimeSeries tsI, TimeSeries tsJ, SearchWindow window, DistanceFunction distFn)
    {
-      return constrainedTimeWarp(tsI, tsJ, window, distFn).getPath();
+      return constrainedTimeWarp(tsI, tsJ, window, distFn, (ForkJoinPool)null).getPath();
    }
 
 
    public static TimeWarpInfo getWarpInfoBetween(TimeSeries tsI, TimeSeries tsJ, SearchWindow window, DistanceFunction distFn)
    {
-      return constrainedTimeWarp(tsI, tsJ, window, distFn);
+      return constrainedTimeWarp(tsI, tsJ, window, distFn, (ForkJoinPool)null);
+   }
+
+
+   // The cells of the window are filled in parallel in 'pool' by anti-diagonal wavefronts of tiles (see Wavefront),
+   //    the result is identical to getWarpPathBetween(tsI, tsJ, window, distFn).
+   public static WarpPath getWarpPathBetween(TimeSeries tsI, TimeSeries tsJ, SearchWindow window, DistanceFunction distFn,
+                                             ForkJoinPool pool)
+   {
+      return constrainedTimeWarp(tsI, tsJ, window, distFn, pool).getPath();
    }
 
 
-   private static TimeWarpInfo constrainedTimeWarp(TimeSeries tsI, TimeSeries tsJ, SearchWindow window, DistanceFunction distFn)
+   public static TimeWarpInfo getWarpInfoBetween(TimeSeries tsI, TimeSeries tsJ, SearchWindow window, DistanceFunction distFn,
+                                                 ForkJoinPool pool)
+   {
+      return constrainedTimeWarp(tsI, tsJ, window, distFn, pool);
+   }
+
+
+   private static TimeWarpInfo constrainedTimeWarp(TimeSeries tsI, TimeSeries tsJ, SearchWindow window, DistanceFunction distFn,
+                                                   ForkJoinPool pool)
+   {
+      // Free any rescources associated with the costMatrix (a memory-mapped swap file may have been created if the
+      //    window did not fit into main memory).
+      try (WindowMatrix costMatrix = new WindowMatrix(window))
+      {
+         return constrainedTimeWarp(tsI, tsJ, window, distFn, costMatrix, pool);
+      }
+   }
+
+
+   private static TimeWarpInfo constrainedTimeWarp(TimeSeries tsI, TimeSeries tsJ, SearchWindow window, DistanceFunction distFn,
+                                                   CostMatrix costMatrix, ForkJoinPool pool)
    {
       //     COST MATRIX:
       //   5|_|_|_|_|_|_|E| E = min Global Cost
@@ -296,41 +347,39 @@ catch (Exception e)
       //     0 1 2 3 4 5 6
       //            i
       //   access is M(i,j)... column-row
-      final WindowMatrix costMatrix = new WindowMatrix(window);
       final int maxI = tsI.size()-1;
       final int maxJ = tsJ.size()-1;
 
-      // Get an iterator that traverses the window cells in the order that the cost org.openmole.tool.dwt.matrix is filled.
-      //    (first to last row (1..maxI), bottom to top (1..MaxJ)
-      final Iterator matrixIterator = window.iterator();
-
-      while (matrixIterator.hasNext())
+      // Fill the window cells column by column (first to last column (0..maxI), bottom to top (minJ..maxJ)), or by
+      //    wavefronts of tiles in 'pool'.
+      new Wavefront(tsI, tsJ, distFn, window)
       {
-         final ColMajorCell currentCell = (ColMajorCell)matrixIterator.next();  // current cell being filled
-         final int i = currentCell.getCol();
-         final int j = currentCell.getRow();
-
-         if ( (i==0) && (j==0) )      // bottom left cell (first row AND first column)
-            costMatrix.put(i, j, distFn.calcDistance(tsI.getMeasurementVector(0), tsJ.getMeasurementVector(0)));
-         else if (i == 0)             // first column
+         void fillColumn(DistanceKernel kernel, int i, int jFrom, int jTo)
          {
-            costMatrix.put(i, j, distFn.calcDistance(tsI.getMeasurementVector(0), tsJ.getMeasurementVector(j)) +
-                                 costMatrix.get(i, j-1));
-         }
-         else if (j == 0)             // first row
-         {
-            costMatrix.put(i, j, distFn.calcDistance(tsI.getMeasurementVector(i), tsJ.getMeasurementVector(0)) +
-                                 costMatrix.get(i-1, j));
-         }
-         else                         // not first column or first row
-         {
-            final double minGlobalCost = Math.min(costMatrix.get(i-1, j),
-                                                  Math.min(costMatrix.get(i-1, j-1),
-                                                           costMatrix.get(i, j-1)));
-            costMatrix.put(i, j, minGlobalCost + distFn.calcDistance(tsI.getMeasurementVector(i),
-                                                                     tsJ.getMeasurementVector(j)));
-         }  // end if
-      }  // end while loop
+            for (int j=jFrom; j<=jTo; j++)
+            {
+               if ( (i==0) && (j==0) )      // bottom left cell (first row AND first column)
+                  costMatrix.put(i, j, kernel.calcDistance(0, 0));
+               else if (i == 0)             // first column
+               {
+                  costMatrix.put(i, j, kernel.calcDistance(0, j) +
+                                       costMatrix.get(i, j-1));
+               }
+               else if (j == 0)             // first row
+               {
+                  costMatrix.put(i, j, kernel.calcDistance(i, 0) +
+                                       costMatrix.get(i-1, j));
+               }
+               else                         // not first column or first row
+               {
+                  final double minGlobalCost = Math.min(costMatrix.get(i-1, j),
+                                                        Math.min(costMatrix.get(i-1, j-1),
+                                                                 costMatrix.get(i, j-1)));
+                  costMatrix.put(i, j, minGlobalCost + kernel.calcDistance(i, j));
+               }  // end if
+            }  // end for loop
+         }  // end fillColumn(...)
+      }.fill(pool);
 
       // Minimum Cost is at (maxI, maxJ)
       final double minimumCost = costMatrix.get(maxI, maxJ);
@@ -410,11 +459,76 @@ catch (Exception e)
          minCostPath.addFirst(i, j);
       }  // end while loop
 
-      // Free any rescources associated with the costMatrix (a swap file may have been created if the swa file did not
-      //    fit into main memory).
-      costMatrix.freeMem();
-
       return new TimeWarpInfo(minimumCost, minCostPath);
    }  // end ConstrainedTimeWarp
 
+
+   // Fills the cells of the window column by column keeping only the last 2 columns, returns the cost at
+   //    (maxI, maxJ) or Double.POSITIVE_INFINITY as soon as the minimum of a column plus the remaining bounds of the
+   //    following columns is greater than 'bestSoFar' (never abandoned if 'remainingBounds' is null).
+   private static double sweepWindow(SearchWindow window, DistanceKernel kernel, double[] remainingBounds,
+                                     double bestSoFar)
+   {
+      int maxHeight = 0;
+      for (int i=0; i<=window.maxI(); i++)
+         maxHeight = Math.max(maxHeight, window.maxJforI(i)-window.minJforI(i)+1);
+
+      double[] lastCol = new double[maxHeight];
+      double[] currCol = new double[maxHeight];
+      int lastMinJ = 0;
+      int lastMaxJ = -1;   // no previous column for i=0
+
+      for (int i=0; i<=window.maxI(); i++)   // i = columns
+      {
+         final int minJ = window.minJforI(i);
+         final int maxJ = window.maxJforI(i);
+         double columnMin = Double.POSITIVE_INFINITY;   // only needed when the warp can be abandoned
+
+         for (int j=minJ; j<=maxJ; j++)   // j = rows
+         {
+            final double cost;
+            if ( (i==0) && (j==0) )   // bottom left cell (first row AND first column)
+               cost = kernel.calcDistance(0, 0);
+            else
+            {
+               // (i,j) = LocalCost(i,j) + minGlobalCost{(i-1,j),(i-1,j-1),(i,j-1)}, cells out of the window cost
+               //    infinity.
+               final double leftCost = ((j>=lastMinJ) && (j<=lastMaxJ)) ? lastCol[j-lastMinJ] : Double.POSITIVE_INFINITY;
+               final double diagCost = ((j>lastMinJ) && (j-1<=lastMaxJ)) ? lastCol[j-1-lastMinJ] : Double.POSITIVE_INFINITY;
+               final double downCost = (j>minJ) ? currCol[j-1-minJ] : Double.POSITIVE_INFINITY;
+               cost = Math.min(leftCost, Math.min(diagCost, downCost)) + kernel.calcDistance(i, j);
+            }  // end if
+
+            currCol[j-minJ] = cost;
+            if (remainingBounds != null)
+               columnMin = Math.min(columnMin, cost);
+         }  // end for loop
+
+         // The warp path goes through this column and then through every remaining column.
+         if ((remainingBounds != null) && exceeds(columnMin + remainingBounds[i+1], bestSoFar))
+            return Double.POSITIVE_INFINITY;
+
+         // Swap the references between the two arrays.
+         final double[] temp = lastCol;
+         lastCol = currCol;
+         currCol = temp;
+         lastMinJ = minJ;
+         lastMaxJ = maxJ;
+      }  // end for loop
+
+      // Minimum Cost is at (maxI, maxJ), infinite if the window does not contain that cell.
+      if ((window.maxJ() < lastMinJ) || (window.maxJ() > lastMaxJ))
+         return Double.POSITIVE_INFINITY;
+      else
+         return lastCol[window.maxJ()-lastMinJ];
+   }  // end sweepWindow(....)
+
+
+   // The distance kernel is picked once per warp, it reads a copy of the measurements of both time series.
+   static DistanceKernel getKernel(TimeSeries tsI, TimeSeries tsJ, DistanceFunction distFn)
+   {
+      return DistanceKernel.getKernel(distFn, tsI.getMeasurements(), tsI.numOfDimensions(),
+                                      tsJ.getMeasurements(), tsJ.numOfDimensions());
+   }
+
 }  // end class DtwTest
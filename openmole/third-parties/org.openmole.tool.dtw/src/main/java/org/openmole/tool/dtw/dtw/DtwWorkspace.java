@@ -0,0 +1,470 @@
+/*
+ * DtwWorkspace.java
+ */
+
+package org.openmole.tool.dtw.dtw;
+
+import org.openmole.tool.dtw.timeseries.TimeSeries;
+import org.openmole.tool.dtw.util.DistanceFunction;
+import org.openmole.tool.dtw.util.DistanceKernel;
+
+
+// Buffers reused by successive FastDTW distance computations: the PAA approximations, search windows, cost matrices
+//    and warp paths of every resolution are stored in primitive arrays that are only reallocated when a longer time
+//    series is warped.  The distances are identical to FastDTW.getWarpDistBetween(...) but, once the buffers have
+//    grown, a warp allocates almost nothing (the distance kernels of each resolution).
+//
+// A workspace is not thread safe, use one workspace per thread.
+public class DtwWorkspace
+{
+   // CONSTANTS
+   private static final double RESOLUTION_FACTOR = 2.0;
+   private static final int MAX_RESOLUTIONS = 32;   // a resolution halves the size of the previous one
+
+
+   // PRIVATE DATA
+   // Measurements of the time series at each resolution, resolution 0 is the original time series.
+   private final double[][] valuesI = new double[MAX_RESOLUTIONS][];
+   private final double[][] valuesJ = new double[MAX_RESOLUTIONS][];
+   private final int[][] aggPtSizeI = new int[MAX_RESOLUTIONS][];   // number of points averaged into each point
+   private final int[][] aggPtSizeJ = new int[MAX_RESOLUTIONS][];
+   private final int[] sizeI = new int[MAX_RESOLUTIONS];
+   private final int[] sizeJ = new int[MAX_RESOLUTIONS];
+
+   // Measurements copied out of the warped TimeSeries.
+   private double[] seriesI = new double[0];
+   private double[] seriesJ = new double[0];
+
+   // Search window of the current resolution, column i spans the rows minJ[i]..maxJ[i].
+   private int[] minJ = new int[0];
+   private int[] maxJ = new int[0];
+   private int[] lastMinJ = new int[0];   // copy of the window before an expansion
+   private int[] lastMaxJ = new int[0];
+   private int[] colOffsets = new int[0];
+
+   // Cost matrix of the cells of the search window (column-major), or 2 columns for the full resolution.
+   private double[] costs = new double[0];
+   private double[] lastCol = new double[0];
+   private double[] currCol = new double[0];
+
+   // Warp path found at the previous resolution: (pathI[p], pathJ[p]) for p=pathStart..pathI.length-1.
+   private int[] pathI = new int[0];
+   private int[] pathJ = new int[0];
+   private int pathStart;
+
+
+
+   // CONSTRUCTOR
+   public DtwWorkspace()
+   {
+   }
+
+
+   // Pre-sizes the buffers for time series of up to 'maxLength' points.
+   public DtwWorkspace(int maxLength)
+   {
+      ensureWindowCapacity(maxLength, maxLength);
+   }
+
+
+
+   // PUBLIC FUNCTIONS
+   public double getWarpDistBetween(TimeSeries tsI, TimeSeries tsJ, DistanceFunction distFn)
+   {
+      return getWarpDistBetween(tsI, tsJ, FastDTW.DEFAULT_SEARCH_RADIUS, distFn);
+   }
+
+
+   public double getWarpDistBetween(TimeSeries tsI, TimeSeries tsJ, int searchRadius, DistanceFunction distFn)
+   {
+      seriesI = measurements(tsI, seriesI);
+      seriesJ = measurements(tsJ, seriesJ);
+      return fastDTW(seriesI, tsI.size(), tsI.numOfDimensions(), seriesJ, tsJ.size(), tsJ.numOfDimensions(),
+                     searchRadius, distFn);
+   }
+
+
+   // Distance between two one-dimensional time series, no TimeSeries needs to be created.
+   public double getWarpDistBetween(double[] seriesI, double[] seriesJ, int searchRadius, DistanceFunction distFn)
+   {
+      return fastDTW(seriesI, seriesI.length, 1, seriesJ, seriesJ.length, 1, searchRadius, distFn);
+   }
+
+
+
+   // PRIVATE FUNCTIONS
+   // Copies the measurements of a time series into the buffer, or into a larger one if it is too small.
+   private static double[] measurements(TimeSeries ts, double[] buffer)
+   {
+      final int length = ts.size()*ts.numOfDimensions();
+      return ts.getMeasurements(buffer.length < length ? new double[Math.max(length, 2*buffer.length)] : buffer);
+   }  // end measurements(..)
+
+
+   private double fastDTW(double[] measurementsI, int lengthI, int dimsI, double[] measurementsJ, int lengthJ,
+                          int dimsJ, int searchRadius, DistanceFunction distFn)
+   {
+      if (searchRadius < 0)
+         searchRadius = 0;
+
+      final int minTSsize = searchRadius+2;
+
+      // Shrink both time series until one of them is small enough for a full Dynamic Time Warping.
+      valuesI[0] = measurementsI;
+      valuesJ[0] = measurementsJ;
+      sizeI[0] = lengthI;
+      sizeJ[0] = lengthJ;
+
+      int res = 0;
+      while ( (sizeI[res] > minTSsize) && (sizeJ[res] > minTSsize) )
+      {
+         shrink(valuesI, aggPtSizeI, sizeI, res, dimsI);
+         shrink(valuesJ, aggPtSizeJ, sizeJ, res, dimsJ);
+         res++;
+      }  // end while loop
+
+      // Full Dynamic Time Warping at the lowest resolution.
+      fullWindow(sizeI[res], sizeJ[res]);
+
+      // Project the warp path found at each resolution to the next higher resolution, the warp path is not needed
+      //    at the full resolution.
+      while (res > 0)
+      {
+         fillWindow(DistanceKernel.getKernel(distFn, valuesI[res], dimsI, valuesJ[res], dimsJ), sizeI[res], sizeJ[res]);
+         findWarpPath(sizeI[res]-1, sizeJ[res]-1);
+
+         res--;
+         projectWarpPath(aggPtSizeI[res+1], aggPtSizeJ[res+1], sizeI[res], sizeJ[res]);
+         expandWindow(searchRadius, sizeI[res]-1, sizeJ[res]-1);
+      }  // end while loop
+
+      return sweepWindow(DistanceKernel.getKernel(distFn, measurementsI, dimsI, measurementsJ, dimsJ), lengthI-1,
+                         lengthJ-1);
+   }  // end fastDTW(........)
+
+
+   // Computes the PAA approximation of resolution res+1 from the resolution res (same arithmetic as the PAA class).
+   private static void shrink(double[][] values, int[][] aggPtSize, int[] size, int res, int dims)
+   {
+      final double[] from = values[res];
+      final int fromSize = size[res];
+      final int shrunkSize = (int)(fromSize/RESOLUTION_FACTOR);
+
+      if ( (values[res+1] == null) || (values[res+1].length < shrunkSize*dims) )
+         values[res+1] = new double[shrunkSize*dims];
+      if ( (aggPtSize[res+1] == null) || (aggPtSize[res+1].length < shrunkSize) )
+         aggPtSize[res+1] = new int[shrunkSize];
+
+      final double[] to = values[res+1];
+      final int[] ptSizes = aggPtSize[res+1];
+      final double reducedPtSize = (double)fromSize/(double)shrunkSize;
+
+      int ptToReadFrom = 0;
+      int pt = 0;
+      while (ptToReadFrom < fromSize)
+      {
+         final int ptToReadTo = (int)Math.round(reducedPtSize*(pt+1))-1;   // determine end of current range
+         final int ptsToRead = ptToReadTo-ptToReadFrom+1;
+
+         for (int dim=0; dim<dims; dim++)
+         {
+            double sum = 0.0;
+            for (int p=ptToReadFrom; p<=ptToReadTo; p++)
+               sum += from[p*dims+dim];
+
+            to[pt*dims+dim] = sum / ptsToRead;
+         }  // end for loop
+
+         ptSizes[pt++] = ptsToRead;
+         ptToReadFrom = ptToReadTo + 1;
+      }  // end while loop
+
+      size[res+1] = pt;
+   }  // end shrink(.....)
+
+
+   private void fullWindow(int lengthI, int lengthJ)
+   {
+      ensureWindowCapacity(lengthI, lengthJ);
+      for (int i=0; i<lengthI; i++)
+      {
+         minJ[i] = 0;
+         maxJ[i] = lengthJ-1;
+      }  // end for loop
+   }  // end fullWindow(..)
+
+
+   // Same window as the ExpandedResWindow class before the expansion.
+   private void projectWarpPath(int[] shrunkPtSizeI, int[] shrunkPtSizeJ, int lengthI, int lengthJ)
+   {
+      ensureWindowCapacity(lengthI, lengthJ);
+      java.util.Arrays.fill(minJ, 0, lengthI, -1);
+
+      int currentI = pathI[pathStart];
+      int currentJ = pathJ[pathStart];
+      int lastWarpedI = Integer.MAX_VALUE;
+      int lastWarpedJ = Integer.MAX_VALUE;
+
+      for (int w=pathStart; w<pathI.length; w++)
+      {
+         final int warpedI = pathI[w];
+         final int warpedJ = pathJ[w];
+         final int blockISize = shrunkPtSizeI[warpedI];
+         final int blockJSize = shrunkPtSizeJ[warpedJ];
+
+         if (warpedJ > lastWarpedJ)
+            currentJ += shrunkPtSizeJ[lastWarpedJ];
+
+         if (warpedI > lastWarpedI)
+            currentI += shrunkPtSizeI[lastWarpedI];
+
+         // Diagonal move, 2 more cells make the projected path continuous.
+         if ((warpedJ>lastWarpedJ) && (warpedI>lastWarpedI))
+         {
+            markVisited(currentI-1, currentJ);
+            markVisited(currentI, currentJ-1);
+         }  // end if
+
+         for (int x=0; x<blockISize; x++)
+         {
+            markVisited(currentI+x, currentJ);
+            markVisited(currentI+x, currentJ+blockJSize-1);
+         }  // end for loop
+
+         lastWarpedI = warpedI;
+         lastWarpedJ = warpedJ;
+      }  // end for loop
+   }  // end projectWarpPath(....)
+
+
+   // Same expansion as SearchWindow.expandWindow(.), without building the list of the window cells.
+   private void expandWindow(int radius, int maxI, int maxRow)
+   {
+      if (radius > 0)
+      {
+         expandSearchWindow(1, maxI, maxRow);
+         expandSearchWindow(radius-1, maxI, maxRow);
+      }
+   }  // end expandWindow(...)
+
+
+   private void expandSearchWindow(int radius, int maxI, int maxRow)
+   {
+      if (radius > 0)
+      {
+         // The cells of the window before the expansion are expanded.
+         System.arraycopy(minJ, 0, lastMinJ, 0, maxI+1);
+         System.arraycopy(maxJ, 0, lastMaxJ, 0, maxI+1);
+
+         for (int col=0; col<=maxI; col++)
+         {
+            for (int row=lastMinJ[col]; row<=lastMaxJ[col]; row++)
+            {
+               if ( (col != 0) && (row != maxRow) )   // move to upper left if possible
+               {
+                  final int cellsPastEdge = Math.max(0, Math.max(radius-col, row+radius-maxRow));
+                  markVisited(col-radius+cellsPastEdge, row+radius-cellsPastEdge);
+               }  // end if
+
+               if (row != maxRow)   // move up if possible
+                  markVisited(col, Math.min(row+radius, maxRow));
+
+               if ( (col != maxI) && (row != maxRow) )   // move to upper-right if possible
+               {
+                  final int cellsPastEdge = Math.max(0, Math.max(col+radius-maxI, row+radius-maxRow));
+                  markVisited(col+radius-cellsPastEdge, row+radius-cellsPastEdge);
+               }  // end if
+
+               if (col != 0)   // move left if possible
+                  markVisited(Math.max(col-radius, 0), row);
+
+               if (col != maxI)   // move right if possible
+                  markVisited(Math.min(col+radius, maxI), row);
+
+               if ( (col != 0) && (row != 0) )   // move to lower-left if possible
+               {
+                  final int cellsPastEdge = Math.max(0, Math.max(radius-col, radius-row));
+                  markVisited(col-radius+cellsPastEdge, row-radius+cellsPastEdge);
+               }  // end if
+
+               if (row != 0)   // move down if possible
+                  markVisited(col, Math.max(row-radius, 0));
+
+               if ( (col != maxI) && (row != 0) )   // move to lower-right if possible
+               {
+                  final int cellsPastEdge = Math.max(0, Math.max(col+radius-maxI, radius-row));
+                  markVisited(col+radius-cellsPastEdge, row-radius+cellsPastEdge);
+               }  // end if
+            }  // end for loop
+         }  // end for loop
+      }  // end if
+   }  // end expandSearchWindow(...)
+
+
+   private void markVisited(int col, int row)
+   {
+      if (minJ[col] == -1)
+      {
+         minJ[col] = row;
+         maxJ[col] = row;
+      }
+      else if (minJ[col] > row)
+         minJ[col] = row;
+      else if (maxJ[col] < row)
+         maxJ[col] = row;
+   }  // end markVisited(..)
+
+
+   // Fills the cost matrix of the cells of the window (see DTW.constrainedTimeWarp(....)).
+   private void fillWindow(DistanceKernel kernel, int lengthI, int lengthJ)
+   {
+      int windowSize = 0;
+      for (int i=0; i<lengthI; i++)
+      {
+         colOffsets[i] = windowSize;
+         windowSize += maxJ[i]-minJ[i]+1;
+      }  // end for loop
+
+      if (costs.length < windowSize)
+         costs = new double[Math.max(windowSize, 2*costs.length)];
+
+      for (int i=0; i<lengthI; i++)
+      {
+         for (int j=minJ[i]; j<=maxJ[i]; j++)
+         {
+            final double cost;
+            if ( (i==0) && (j==0) )
+               cost = kernel.calcDistance(0, 0);
+            else if (i == 0)
+               cost = kernel.calcDistance(0, j) + costAt(i, j-1);
+            else if (j == 0)
+               cost = kernel.calcDistance(i, 0) + costAt(i-1, j);
+            else
+            {
+               final double minGlobalCost = Math.min(costAt(i-1, j), Math.min(costAt(i-1, j-1), costAt(i, j-1)));
+               cost = minGlobalCost + kernel.calcDistance(i, j);
+            }  // end if
+
+            costs[colOffsets[i]+j-minJ[i]] = cost;
+         }  // end for loop
+      }  // end for loop
+   }  // end fillWindow(...)
+
+
+   private double costAt(int i, int j)
+   {
+      if ((j<minJ[i]) || (j>maxJ[i]))
+         return Double.POSITIVE_INFINITY;
+      else
+         return costs[colOffsets[i]+j-minJ[i]];
+   }  // end costAt(..)
+
+
+   // Backtracks the filled cost matrix from (maxI, maxRow) to (0, 0) with the tie breaking rules of DTW, the warp path
+   //    is stored at the end of pathI/pathJ.
+   private void findWarpPath(int maxI, int maxRow)
+   {
+      if (pathI.length < maxI+maxRow+1)
+      {
+         pathI = new int[2*(maxI+maxRow+1)];
+         pathJ = new int[pathI.length];
+      }  // end if
+
+      int p = pathI.length-1;
+      int i = maxI;
+      int j = maxRow;
+      pathI[p] = i;
+      pathJ[p] = j;
+      while ((i>0) || (j>0))
+      {
+         final double diagCost = ((i>0) && (j>0)) ? costAt(i-1, j-1) : Double.POSITIVE_INFINITY;
+         final double leftCost = (i > 0) ? costAt(i-1, j) : Double.POSITIVE_INFINITY;
+         final double downCost = (j > 0) ? costAt(i, j-1) : Double.POSITIVE_INFINITY;
+
+         if ((diagCost<=leftCost) && (diagCost<=downCost))
+         {
+            i--;
+            j--;
+         }
+         else if ((leftCost<diagCost) && (leftCost<downCost))
+            i--;
+         else if ((downCost<diagCost) && (downCost<leftCost))
+            j--;
+         else if (i <= j)
+            j--;
+         else
+            i--;
+
+         p--;
+         pathI[p] = i;
+         pathJ[p] = j;
+      }  // end while loop
+
+      pathStart = p;
+   }  // end findWarpPath(..)
+
+
+   // Distance at (maxI, maxRow) keeping only 2 columns of the cost matrix (see DTW.sweepWindow(....)).
+   private double sweepWindow(DistanceKernel kernel, int maxI, int maxRow)
+   {
+      int maxHeight = 0;
+      for (int i=0; i<=maxI; i++)
+         maxHeight = Math.max(maxHeight, maxJ[i]-minJ[i]+1);
+
+      if (lastCol.length < maxHeight)
+      {
+         lastCol = new double[maxHeight];
+         currCol = new double[maxHeight];
+      }  // end if
+
+      double[] last = lastCol;
+      double[] curr = currCol;
+      int lastMin = 0;
+      int lastMax = -1;   // no previous column for i=0
+
+      for (int i=0; i<=maxI; i++)
+      {
+         final int min = minJ[i];
+         final int max = maxJ[i];
+
+         for (int j=min; j<=max; j++)
+         {
+            if ( (i==0) && (j==0) )
+               curr[0] = kernel.calcDistance(0, 0);
+            else
+            {
+               final double leftCost = ((j>=lastMin) && (j<=lastMax)) ? last[j-lastMin] : Double.POSITIVE_INFINITY;
+               final double diagCost = ((j>lastMin) && (j-1<=lastMax)) ? last[j-1-lastMin] : Double.POSITIVE_INFINITY;
+               final double downCost = (j>min) ? curr[j-1-min] : Double.POSITIVE_INFINITY;
+               curr[j-min] = Math.min(leftCost, Math.min(diagCost, downCost)) + kernel.calcDistance(i, j);
+            }  // end if
+         }  // end for loop
+
+         final double[] temp = last;
+         last = curr;
+         curr = temp;
+         lastMin = min;
+         lastMax = max;
+      }  // end for loop
+
+      if ((maxRow < lastMin) || (maxRow > lastMax))
+         return Double.POSITIVE_INFINITY;
+      else
+         return last[maxRow-lastMin];
+   }  // end sweepWindow(...)
+
+
+   private void ensureWindowCapacity(int lengthI, int lengthJ)
+   {
+      if (minJ.length < lengthI)
+      {
+         final int capacity = Math.max(lengthI, 2*minJ.length);
+         minJ = new int[capacity];
+         maxJ = new int[capacity];
+         lastMinJ = new int[capacity];
+         lastMaxJ = new int[capacity];
+         colOffsets = new int[capacity];
+      }  // end if
+   }  // end ensureWindowCapacity(..)
+
+}  // end class DtwWorkspace
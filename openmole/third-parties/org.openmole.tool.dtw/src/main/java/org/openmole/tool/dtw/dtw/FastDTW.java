@@ -8,9 +8,14 @@
 package org.openmole.tool.dtw.dtw;
 
 import org.openmole.tool.dtw.timeseries.TimeSeries;
-import org.openmole.tool.dtw.timeseries.PAA;
 import org.openmole.tool.dtw.util.DistanceFunction;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.IntStream;
+
 
 public class FastDTW
 {
@@ -20,35 +25,129 @@ public class FastDTW
 
    public static double getWarpDistBetween(TimeSeries tsI, TimeSeries tsJ, DistanceFunction distFn)
    {
-      return fastDTW(tsI, tsJ, DEFAULT_SEARCH_RADIUS, distFn).getDistance();
+      return getWarpDistBetween(tsI, tsJ, DEFAULT_SEARCH_RADIUS, distFn);
    }
 
 
+   // The warp paths are only needed at the lower resolutions, the distance at full resolution is computed keeping
+   //    only 2 columns of the cost matrix.
    public static double getWarpDistBetween(TimeSeries tsI, TimeSeries tsJ, int searchRadius, DistanceFunction distFn)
    {
-      return fastDTW(tsI, tsJ, searchRadius, distFn).getDistance();
+      return getWarpDistBetween(new Resolutions(tsI), new Resolutions(tsJ), searchRadius, distFn);
+   }
+
+
+   // The warp paths are only needed at the lower resolutions, the warp at full resolution is abandoned as soon as
+   //    its distance is certain to be greater than 'bestSoFar' (see DTW.getWarpDistBetween(.., bestSoFar)).
+   public static double getWarpDistBetween(TimeSeries tsI, TimeSeries tsJ, DistanceFunction distFn, double bestSoFar)
+   {
+      return getWarpDistBetween(tsI, tsJ, DEFAULT_SEARCH_RADIUS, distFn, bestSoFar);
+   }
+
+
+   public static double getWarpDistBetween(TimeSeries tsI, TimeSeries tsJ, int searchRadius, DistanceFunction distFn,
+                                           double bestSoFar)
+   {
+      final SearchWindow window = searchWindow(new Resolutions(tsI), new Resolutions(tsJ), 0, searchRadius, distFn, null);
+      return DTW.getWarpDistBetween(tsI, tsJ, window, distFn, bestSoFar);
    }
 
 
    public static WarpPath getWarpPathBetween(TimeSeries tsI, TimeSeries tsJ, DistanceFunction distFn)
    {
-      return fastDTW(tsI, tsJ, DEFAULT_SEARCH_RADIUS, distFn).getPath();
+      return fastDTW(tsI, tsJ, DEFAULT_SEARCH_RADIUS, distFn, null).getPath();
    }
 
 
    public static WarpPath getWarpPathBetween(TimeSeries tsI, TimeSeries tsJ, int searchRadius, DistanceFunction distFn)
    {
-      return fastDTW(tsI, tsJ, searchRadius, distFn).getPath();
+      return fastDTW(tsI, tsJ, searchRadius, distFn, null).getPath();
    }
 
 
    public static TimeWarpInfo getWarpInfoBetween(TimeSeries tsI, TimeSeries tsJ, int searchRadius, DistanceFunction distFn)
    {
-      return fastDTW(tsI, tsJ, searchRadius, distFn);
+      return fastDTW(tsI, tsJ, searchRadius, distFn, null);
+   }
+
+
+   // The cost matrices of every resolution are filled in parallel in 'pool' (see DTW.getWarpInfoBetween(..., pool)),
+   //    the result is identical to getWarpPathBetween(tsI, tsJ, searchRadius, distFn).
+   public static WarpPath getWarpPathBetween(TimeSeries tsI, TimeSeries tsJ, int searchRadius, DistanceFunction distFn,
+                                             ForkJoinPool pool)
+   {
+      return fastDTW(tsI, tsJ, searchRadius, distFn, pool).getPath();
+   }
+
+
+   public static TimeWarpInfo getWarpInfoBetween(TimeSeries tsI, TimeSeries tsJ, int searchRadius, DistanceFunction distFn,
+                                                 ForkJoinPool pool)
+   {
+      return fastDTW(tsI, tsJ, searchRadius, distFn, pool);
+   }
+
+
+   // Computes the FastDTW distance between every pair of time series, the PAA approximations of each time series are
+   //    built once and shared by all the pairs it is part of.  The pairs (i,j) with i<=j are computed in parallel in
+   //    the common ForkJoinPool and the symmetric matrix is returned.
+   public static double[][] pairwise(TimeSeries[] series, int searchRadius, DistanceFunction distFn)
+   {
+      return pairwise(series, searchRadius, distFn, ForkJoinPool.commonPool());
    }
 
 
-   private static TimeWarpInfo fastDTW(TimeSeries tsI, TimeSeries tsJ, int searchRadius, DistanceFunction distFn)
+   public static double[][] pairwise(TimeSeries[] series, int searchRadius, DistanceFunction distFn, ForkJoinPool pool)
+   {
+      final Resolutions[] resolutions = buildResolutions(series, searchRadius, pool);
+      final double[][] distances = new double[series.length][series.length];
+
+      pool.invoke(new PairwiseRows(resolutions, 0, series.length, 0, searchRadius, distFn, distances));
+
+      for (int i=0; i<series.length; i++)
+         for (int j=0; j<i; j++)
+            distances[i][j] = distances[j][i];
+
+      return distances;
+   }  // end pairwise(....)
+
+
+   // Streams the upper triangle of the pairwise distance matrix to 'out' for collections of time series whose full
+   //    matrix would not fit into main memory: line i holds the distances (i,i)..(i,n-1) separated by commas.  Rows
+   //    are computed in parallel by blocks of 'rowsPerBlock' rows, only one block is held in memory.
+   public static void pairwise(TimeSeries[] series, int searchRadius, DistanceFunction distFn, ForkJoinPool pool,
+                               int rowsPerBlock, Writer out) throws IOException
+   {
+      final Resolutions[] resolutions = buildResolutions(series, searchRadius, pool);
+      final double[][] block = new double[Math.max(rowsPerBlock, 1)][];
+
+      for (int firstRow=0; firstRow<series.length; firstRow+=block.length)
+      {
+         final int lastRow = Math.min(firstRow+block.length, series.length);
+         for (int r=firstRow; r<lastRow; r++)
+            block[r-firstRow] = new double[series.length];
+
+         pool.invoke(new PairwiseRows(resolutions, firstRow, lastRow, firstRow, searchRadius, distFn, block));
+
+         for (int r=firstRow; r<lastRow; r++)
+         {
+            for (int j=r; j<series.length; j++)
+            {
+               out.write(Double.toString(block[r-firstRow][j]));
+               if (j < series.length-1)
+                  out.write(",");
+            }  // end for loop
+
+            out.write("\n");
+            block[r-firstRow] = null;
+         }  // end for loop
+      }  // end for loop
+
+      out.flush();
+   }  // end pairwise(......)
+
+
+   private static TimeWarpInfo fastDTW(TimeSeries tsI, TimeSeries tsJ, int searchRadius, DistanceFunction distFn,
+                                       ForkJoinPool pool)
    {
       if (searchRadius < 0)
          searchRadius = 0;
@@ -58,24 +157,119 @@ public class FastDTW
       if ( (tsI.size() <= minTSsize) || (tsJ.size()<=minTSsize) )
       {
          // Perform full Dynamic Time Warping.
-         return DTW.getWarpInfoBetween(tsI, tsJ, distFn);
+         return DTW.getWarpInfoBetween(tsI, tsJ, distFn, pool);
       }
       else
       {
-         final double resolutionFactor = 2.0;
+         // Find the optimal warp path through this search window constraint.
+         return DTW.getWarpInfoBetween(tsI, tsJ,
+                                       searchWindow(new Resolutions(tsI), new Resolutions(tsJ), 0, searchRadius, distFn, pool),
+                                       distFn, pool);
+      }  // end if
+   }  // end recFastDTW(....)
 
-         final PAA shrunkI = new PAA(tsI, (int)(tsI.size()/resolutionFactor));
-         final PAA shrunkJ = new PAA(tsJ, (int)(tsJ.size()/resolutionFactor));
 
-          // Determine the search window that constrains the area of the cost org.openmole.tool.dwt.matrix that will be evaluated based on
-          //    the warp path found at the previous resolution (smaller time series).
-          final SearchWindow window = new ExpandedResWindow(tsI, tsJ, shrunkI, shrunkJ,
-                                                            FastDTW.getWarpPathBetween(shrunkI, shrunkJ, searchRadius, distFn),
-                                                            searchRadius);
+   private static TimeWarpInfo fastDTW(Resolutions resI, Resolutions resJ, int level, int searchRadius, DistanceFunction distFn,
+                                       ForkJoinPool pool)
+   {
+      final TimeSeries tsI = resI.get(level);
+      final TimeSeries tsJ = resJ.get(level);
+      final int minTSsize = searchRadius+2;
 
+      if ( (tsI.size() <= minTSsize) || (tsJ.size()<=minTSsize) )
+      {
+         // Perform full Dynamic Time Warping.
+         return DTW.getWarpInfoBetween(tsI, tsJ, distFn, pool);
+      }
+      else
+      {
          // Find the optimal warp path through this search window constraint.
-         return DTW.getWarpInfoBetween(tsI, tsJ, window, distFn);
+         return DTW.getWarpInfoBetween(tsI, tsJ, searchWindow(resI, resJ, level, searchRadius, distFn, pool), distFn, pool);
+      }  // end if
+   }  // end fastDTW(......)
+
+
+   private static double getWarpDistBetween(Resolutions resI, Resolutions resJ, int searchRadius, DistanceFunction distFn)
+   {
+      return DTW.getWarpDistBetween(resI.get(0), resJ.get(0), searchWindow(resI, resJ, 0, searchRadius, distFn, null), distFn);
+   }
+
+
+   // Determine the search window that constrains the area of the cost matrix that will be evaluated based on
+   //    the warp path found at the previous resolution (smaller time series), filled in 'pool' if not null.
+   private static SearchWindow searchWindow(Resolutions resI, Resolutions resJ, int level, int searchRadius,
+                                            DistanceFunction distFn, ForkJoinPool pool)
+   {
+      if (searchRadius < 0)
+         searchRadius = 0;
+
+      final TimeSeries tsI = resI.get(level);
+      final TimeSeries tsJ = resJ.get(level);
+      final int minTSsize = searchRadius+2;
+
+      if ( (tsI.size() <= minTSsize) || (tsJ.size()<=minTSsize) )
+         return new FullWindow(tsI, tsJ);
+      else
+      {
+         return new ExpandedResWindow(tsI, tsJ, resI.getShrunk(level), resJ.getShrunk(level),
+                                      fastDTW(resI, resJ, level+1, searchRadius, distFn, pool).getPath(),
+                                      searchRadius);
       }  // end if
-   }  // end recFastDTW(...)
+   }  // end searchWindow(......)
+
+
+   private static Resolutions[] buildResolutions(final TimeSeries[] series, final int searchRadius, ForkJoinPool pool)
+   {
+      final Resolutions[] resolutions = new Resolutions[series.length];
+      pool.submit(() -> IntStream.range(0, series.length).parallel().forEach(
+         s -> resolutions[s] = new Resolutions(series[s]).buildAll(searchRadius))).join();
+
+      return resolutions;
+   }  // end buildResolutions(...)
+
+
+
+   // Computes the rows firstRow..lastRow-1 of the upper triangle of the pairwise distance matrix, rows are split in
+   //    halves down to a single row so that the idle threads of the pool can steal the (unequal) rows.
+   private static final class PairwiseRows extends RecursiveAction
+   {
+      private static final long serialVersionUID = 1L;
+
+      private final Resolutions[] resolutions;
+      private final int firstRow;
+      private final int lastRow;
+      private final int rowOffset;   // index in 'distances' of the row 'rowOffset'
+      private final int searchRadius;
+      private final DistanceFunction distFn;
+      private final double[][] distances;
+
+      private PairwiseRows(Resolutions[] resolutions, int firstRow, int lastRow, int rowOffset, int searchRadius,
+                           DistanceFunction distFn, double[][] distances)
+      {
+         this.resolutions = resolutions;
+         this.firstRow = firstRow;
+         this.lastRow = lastRow;
+         this.rowOffset = rowOffset;
+         this.searchRadius = searchRadius;
+         this.distFn = distFn;
+         this.distances = distances;
+      }
+
+      protected void compute()
+      {
+         if (lastRow-firstRow > 1)
+         {
+            final int middleRow = (firstRow+lastRow) >>> 1;
+            invokeAll(new PairwiseRows(resolutions, firstRow, middleRow, rowOffset, searchRadius, distFn, distances),
+                      new PairwiseRows(resolutions, middleRow, lastRow, rowOffset, searchRadius, distFn, distances));
+         }
+         else if (lastRow-firstRow == 1)
+         {
+            final double[] row = distances[firstRow-rowOffset];
+            for (int j=firstRow; j<resolutions.length; j++)
+               row[j] = getWarpDistBetween(resolutions[firstRow], resolutions[j], searchRadius, distFn);
+         }  // end if
+      }  // end compute()
+   }  // end class PairwiseRows
 
 }  // end class fastDTW
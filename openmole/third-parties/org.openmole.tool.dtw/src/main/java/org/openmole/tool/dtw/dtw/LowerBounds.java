@@ -0,0 +1,171 @@
+/*
+ * LowerBounds.java
+ */
+
+package org.openmole.tool.dtw.dtw;
+
+import org.openmole.tool.dtw.timeseries.TimeSeries;
+import org.openmole.tool.dtw.util.BinaryDistance;
+import org.openmole.tool.dtw.util.DistanceFunction;
+import org.openmole.tool.dtw.util.DistanceKernel;
+import org.openmole.tool.dtw.util.EuclideanDistance;
+import org.openmole.tool.dtw.util.ManhattanDistance;
+
+
+// Lower bounds of the warp distance between two time series, used to abandon a warp as soon as it is certain that its
+//    distance is greater than the best distance found so far (see DTW.getWarpDistBetween(.., bestSoFar)).  The bounds
+//    assume that the distance function never returns a negative value.
+public class LowerBounds
+{
+   // CONSTANTS
+   private static final int EUCLIDEAN = 0;
+   private static final int MANHATTAN = 1;
+   private static final int BINARY = 2;
+
+
+
+   // PUBLIC FUNCTIONS
+   // LB_Kim: every warp path starts at (0,0) and ends at (maxI,maxJ).  O(1).
+   public static double kim(TimeSeries tsI, TimeSeries tsJ, DistanceFunction distFn)
+   {
+      return kim(DTW.getKernel(tsI, tsJ, distFn), tsI.size()-1, tsJ.size()-1);
+   }
+
+
+   // LB_Keogh: a warp path visits every column i at least once, at a row between window.minJforI(i) and
+   //    window.maxJforI(i).  The cost of that cell is at least the distance between the point i of tsI and the
+   //    envelope (min and max of each dimension) of tsJ over those rows.  O(tsI.size()+tsJ.size()) per dimension.
+   //    Returns 0 for distance functions that have no envelope bound.
+   public static double keogh(TimeSeries tsI, TimeSeries tsJ, SearchWindow window, DistanceFunction distFn)
+   {
+      final double[] columnBounds = keoghColumns(tsI, tsJ, window, distFn);
+      if (columnBounds == null)
+         return 0.0;
+
+      double sum = 0.0;
+      for (int i=0; i<columnBounds.length; i++)
+         sum += columnBounds[i];
+
+      return sum;
+   }  // end keogh(....)
+
+
+
+   // PACKAGE FUNCTIONS
+   static double kim(DistanceKernel kernel, int maxI, int maxJ)
+   {
+      if ((maxI == 0) && (maxJ == 0))
+         return kernel.calcDistance(0, 0);
+      else
+         return kernel.calcDistance(0, 0) + kernel.calcDistance(maxI, maxJ);
+   }
+
+
+   // Returns the LB_Keogh bound of each column of the window, or null if the distance function is not supported.
+   static double[] keoghColumns(TimeSeries tsI, TimeSeries tsJ, SearchWindow window, DistanceFunction distFn)
+   {
+      final int type;
+      if (distFn.getClass() == EuclideanDistance.class)
+         type = EUCLIDEAN;
+      else if (distFn.getClass() == ManhattanDistance.class)
+         type = MANHATTAN;
+      else if (distFn.getClass() == BinaryDistance.class)
+         type = BINARY;
+      else
+         return null;
+
+      final int dims = tsI.numOfDimensions();
+      final int numOfCols = window.maxI()+1;
+      final double[] valuesI = tsI.getMeasurements();
+      final double[] valuesJ = tsJ.getMeasurements();
+      final double[] lower = new double[numOfCols];
+      final double[] upper = new double[numOfCols];
+      final double[] columnBounds = new double[numOfCols];
+
+      for (int d=0; d<dims; d++)
+      {
+         envelope(valuesJ, dims, d, window, lower, upper);
+
+         for (int i=0; i<numOfCols; i++)
+         {
+            final double value = valuesI[i*dims+d];
+            final double gap;
+            if (value > upper[i])
+               gap = value-upper[i];
+            else if (value < lower[i])
+               gap = lower[i]-value;
+            else
+               gap = 0.0;
+
+            if (type == EUCLIDEAN)
+               columnBounds[i] += gap*gap;
+            else if (type == MANHATTAN)
+               columnBounds[i] += gap;
+            else if (gap > 0.0)   // BINARY: the point differs from every point of the envelope
+               columnBounds[i] = 1.0;
+         }  // end for loop
+      }  // end for loop
+
+      if (type == EUCLIDEAN)
+         for (int i=0; i<numOfCols; i++)
+            columnBounds[i] = Math.sqrt(columnBounds[i]);
+
+      return columnBounds;
+   }  // end keoghColumns(....)
+
+
+
+   // PRIVATE FUNCTIONS
+   // Computes the min and max of the dimension d of the rows minJforI(i)..maxJforI(i) for every column i.  When the
+   //    row ranges move monotonically (which is the case for all the windows in this package) the envelope is
+   //    computed with monotonic deques in linear time, it is recomputed from scratch when a range moves backwards.
+   private static void envelope(double[] values, int dims, int d, SearchWindow window,
+                                double[] lower, double[] upper)
+   {
+      final int[] maxDeque = new int[window.maxJ()+1];
+      final int[] minDeque = new int[window.maxJ()+1];
+      int maxHead = 0, maxTail = 0;
+      int minHead = 0, minTail = 0;
+      int nextJ = 0;
+      int lastMinJ = -1;
+      int lastMaxJ = -1;
+
+      for (int i=0; i<=window.maxI(); i++)
+      {
+         final int minJ = window.minJforI(i);
+         final int maxJ = window.maxJforI(i);
+
+         if ((minJ < lastMinJ) || (maxJ < lastMaxJ) || (nextJ < minJ))   // restart from the bottom of the range
+         {
+            maxHead = maxTail = 0;
+            minHead = minTail = 0;
+            nextJ = minJ;
+         }  // end if
+
+         for (; nextJ<=maxJ; nextJ++)
+         {
+            final double value = values[nextJ*dims+d];
+
+            while ((maxTail > maxHead) && (values[maxDeque[maxTail-1]*dims+d] <= value))
+               maxTail--;
+            maxDeque[maxTail++] = nextJ;
+
+            while ((minTail > minHead) && (values[minDeque[minTail-1]*dims+d] >= value))
+               minTail--;
+            minDeque[minTail++] = nextJ;
+         }  // end for loop
+
+         while (maxDeque[maxHead] < minJ)
+            maxHead++;
+         while (minDeque[minHead] < minJ)
+            minHead++;
+
+         upper[i] = values[maxDeque[maxHead]*dims+d];
+         lower[i] = values[minDeque[minHead]*dims+d];
+
+         lastMinJ = minJ;
+         lastMaxJ = maxJ;
+      }  // end for loop
+   }  // end envelope(.....)
+
+}  // end class LowerBounds
@@ -0,0 +1,161 @@
+/*
+ * MappedFileMatrix.java
+ */
+
+package org.openmole.tool.dtw.dtw;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+
+// A CostMatrix stored off-heap in a memory-mapped temporary file, for windows that do not fit into main memory.
+//    Cells are read and written in the mapped memory (no system call per cell), the file is mapped in segments
+//    because a single mapping is limited to 2GB.  The file is created in the temporary directory (java.io.tmpdir,
+//    which the OpenMOLE runtime points to its own tmp directory) and deleted by close().
+class MappedFileMatrix implements CostMatrix, AutoCloseable
+{
+   // CONSTANTS
+   private static final double OUT_OF_WINDOW_VALUE = Double.POSITIVE_INFINITY;
+   private static final int SEGMENT_SHIFT = 24;   // 2^24 doubles (128MB) per mapped segment
+   private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+   private static final int DOUBLE_SIZE = 8;
+
+
+
+   // PRIVATE DATA
+   private final SearchWindow window;
+   private final long[] colOffsets;
+   private final long numOfCells;
+   private final File swapFile;
+   private final FileChannel channel;
+   private DoubleBuffer[] segments;
+
+
+
+   // CONSTRUCTOR
+   MappedFileMatrix(SearchWindow searchWindow)
+   {
+      window = searchWindow;
+      colOffsets = new long[window.maxI()+1];
+
+      // Fill in the offset matrix
+      long currentOffset = 0;
+      for (int i=window.minI(); i<=window.maxI(); i++)
+      {
+         colOffsets[i] = currentOffset;
+         currentOffset += window.maxJforI(i)-window.minJforI(i)+1;
+      }
+      numOfCells = currentOffset;
+
+      try
+      {
+         swapFile = File.createTempFile("dtw", ".swap");
+      }
+      catch (IOException e)
+      {
+         throw new InternalError("ERROR:  Unable to create swap file: " + e.getMessage());
+      }  // end try
+
+      try
+      {
+         channel = FileChannel.open(swapFile.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE,
+                                    StandardOpenOption.DELETE_ON_CLOSE);
+      }
+      catch (IOException e)
+      {
+         swapFile.delete();
+         throw new InternalError("ERROR:  Unable to open swap file '" + swapFile + "': " + e.getMessage());
+      }  // end try
+
+      try
+      {
+         final int numOfSegments = (int)((numOfCells + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+         segments = new DoubleBuffer[numOfSegments];
+         for (int s=0; s<numOfSegments; s++)
+         {
+            final long firstCell = (long)s << SEGMENT_SHIFT;
+            final long segmentCells = Math.min(numOfCells-firstCell, 1L << SEGMENT_SHIFT);
+            segments[s] = channel.map(FileChannel.MapMode.READ_WRITE, firstCell*DOUBLE_SIZE, segmentCells*DOUBLE_SIZE)
+                                 .order(ByteOrder.nativeOrder())
+                                 .asDoubleBuffer();
+         }  // end for loop
+      }
+      catch (IOException e)
+      {
+         close();
+         throw new InternalError("ERROR:  Unable to map swap file '" + swapFile + "': " + e.getMessage());
+      }  // end try
+   }  // end Constructor
+
+
+
+   // PUBLIC FUNCTIONS
+   public void put(int col, int row, double value)
+   {
+      if ((row<window.minJforI(col)) || (row>window.maxJforI(col)))
+      {
+         throw new InternalError("CostMatrix is filled in a cell (col="+col+", row="+row+") that is not in the "+
+                                 "search window");
+      }
+      else
+      {
+         final long cell = colOffsets[col]+row-window.minJforI(col);
+         segment(cell).put((int)(cell & SEGMENT_MASK), value);
+      }  // end if
+   }
+
+
+   public double get(int col, int row)
+   {
+      if ((row<window.minJforI(col)) || (row>window.maxJforI(col)))
+         return OUT_OF_WINDOW_VALUE;
+      else
+      {
+         final long cell = colOffsets[col]+row-window.minJforI(col);
+         return segment(cell).get((int)(cell & SEGMENT_MASK));
+      }  // end if
+   }
+
+
+   public int size()
+   {
+      return window.size();
+   }
+
+
+   // Releases the mapped segments and closes the channel, which deletes the swap file.  The pages are unmapped when
+   //    the segments are garbage collected.
+   public void close()
+   {
+      segments = null;
+      try
+      {
+         channel.close();
+      }
+      catch (IOException e)
+      {
+         System.err.println("unable to close swap file '" + swapFile.getPath() + "'");
+      }
+      finally
+      {
+         if (swapFile.exists() && !swapFile.delete())
+            swapFile.deleteOnExit();
+      }  // end try
+   }  // end close()
+
+
+
+   // PRIVATE FUNCTIONS
+   private DoubleBuffer segment(long cell)
+   {
+      if (segments == null)
+         throw new InternalError("The MappedFileMatrix has been closed by the close() method");
+      else
+         return segments[(int)(cell >>> SEGMENT_SHIFT)];
+   }
+
+}  // end class MappedFileMatrix
@@ -0,0 +1,65 @@
+/*
+ * Resolutions.java
+ */
+
+package org.openmole.tool.dtw.dtw;
+
+import org.openmole.tool.dtw.timeseries.TimeSeries;
+import org.openmole.tool.dtw.timeseries.PAA;
+
+import java.util.ArrayList;
+
+
+// A time series and its successive PAA approximations used by FastDTW, each resolution halving the size of the
+//    previous one.  The resolutions are built on demand, or all at once by buildAll(.) so that they can be shared
+//    between threads (a Resolutions is not thread safe while it is being built).
+class Resolutions
+{
+   // CONSTANTS
+   private static final double RESOLUTION_FACTOR = 2.0;
+
+
+   // PRIVATE DATA
+   private final ArrayList<TimeSeries> levels;   // level 0 is the original time series
+
+
+
+   // CONSTRUCTOR
+   Resolutions(TimeSeries ts)
+   {
+      levels = new ArrayList<TimeSeries>();
+      levels.add(ts);
+   }
+
+
+
+   // FUNCTIONS
+   TimeSeries get(int level)
+   {
+      while (levels.size() <= level)
+      {
+         final TimeSeries last = levels.get(levels.size()-1);
+         levels.add(new PAA(last, (int)(last.size()/RESOLUTION_FACTOR)));
+      }  // end while loop
+
+      return levels.get(level);
+   }  // end get(.)
+
+
+   PAA getShrunk(int level)
+   {
+      return (PAA)get(level+1);
+   }
+
+
+   // Builds every resolution FastDTW can use with this search radius.
+   Resolutions buildAll(int searchRadius)
+   {
+      final int minTSsize = Math.max(searchRadius, 0)+2;
+      for (int level=0; get(level).size()>minTSsize; level++)
+         get(level+1);
+
+      return this;
+   }  // end buildAll(.)
+
+}  // end class Resolutions
@@ -0,0 +1,195 @@
+/*
+ * StreamingDTW.java
+ */
+
+package org.openmole.tool.dtw.dtw;
+
+import org.openmole.tool.dtw.timeseries.TimeSeries;
+import org.openmole.tool.dtw.util.DistanceFunction;
+import org.openmole.tool.dtw.util.DistanceKernel;
+
+import java.util.Arrays;
+
+
+// Subsequence Dynamic Time Warping of a stream against a reference pattern (SPRING, Sakurai et al. 2007): the points
+//    of the stream are added one at a time and, after each point, the best warp distance between the reference and
+//    any subsequence of the stream seen so far is known, along with the start and the end of that subsequence.
+//
+//     COST COLUMNS:
+//   m-1|_|_|_|_|_|E| E = cost of the best match ending at the current point t
+//      |_|_|_|_|_|_|
+//    j |_|_|_|_|_|_| a match may start at any point of the stream (the cost below
+//    0 |_|_|_|_|_|_|    row 0 is 0), so only 2 columns of size m are stored
+//       ... t-1 t
+//           stream
+//
+// Each point costs O(m) time and the memory is O(m), m being the size of the reference.  A StreamingDTW is not thread
+//    safe.
+public class StreamingDTW
+{
+   // PRIVATE DATA
+   private final double[] reference;   // row-major measurements of the reference
+   private final int referenceSize;
+   private final int numOfDimensions;
+   private final double[] point;       // measurements of the last point of the stream
+   private final DistanceKernel kernel;
+
+   private double[] lastCost;   // cost of the best warp of reference[0..j] ending at the previous point
+   private double[] currCost;
+   private long[] lastStart;    // start in the stream of that warp
+   private long[] currStart;
+
+   private long numOfPoints;
+   private double bestDistance;
+   private long bestStart;
+   private long bestEnd;
+
+
+
+   // CONSTRUCTOR
+   public StreamingDTW(TimeSeries reference, DistanceFunction distFn)
+   {
+      if (reference.size() == 0)
+         throw new InternalError("ERROR:  The reference of a StreamingDTW may not be empty.");
+
+      // The reference is copied, it may be modified while the stream is matched.
+      this.referenceSize = reference.size();
+      this.numOfDimensions = reference.numOfDimensions();
+      this.reference = reference.getMeasurements();
+      this.point = new double[numOfDimensions];
+      this.kernel = DistanceKernel.getKernel(distFn, point, numOfDimensions, this.reference, numOfDimensions);
+
+      lastCost = new double[referenceSize];
+      currCost = new double[referenceSize];
+      lastStart = new long[referenceSize];
+      currStart = new long[referenceSize];
+
+      reset();
+   }  // end Constructor
+
+
+
+   // PUBLIC FUNCTIONS
+   //    Forgets the points of the stream added so far.
+   public void reset()
+   {
+      Arrays.fill(currCost, Double.POSITIVE_INFINITY);
+      numOfPoints = 0;
+      bestDistance = Double.POSITIVE_INFINITY;
+      bestStart = -1;
+      bestEnd = -1;
+   }  // end reset()
+
+
+   // Adds the next point of a stream of a single dimension.
+   public double addPoint(double value)
+   {
+      if (numOfDimensions != 1)
+         throw new InternalError("ERROR:  The point has 1 dimension, the reference has " + numOfDimensions + ".");
+
+      point[0] = value;
+      return update();
+   }
+
+
+   // Adds the next point of the stream and returns the distance of the best match ending at this point.
+   public double addPoint(double[] measurements)
+   {
+      if (measurements.length != numOfDimensions)
+         throw new InternalError("ERROR:  The point has " + measurements.length + " dimensions, the reference has " +
+                                 numOfDimensions + ".");
+
+      System.arraycopy(measurements, 0, point, 0, numOfDimensions);
+      return update();
+   }  // end addPoint(.)
+
+
+   // Distance of the best match of the reference found so far in the stream, infinite if no point has been added.
+   public double getBestDistance()
+   {
+      return bestDistance;
+   }
+
+
+   // Index in the stream of the first point of the best match, -1 if no point has been added.
+   public long getBestStart()
+   {
+      return bestStart;
+   }
+
+
+   // Index in the stream of the last point of the best match, -1 if no point has been added.
+   public long getBestEnd()
+   {
+      return bestEnd;
+   }
+
+
+   public long size()
+   {
+      return numOfPoints;
+   }
+
+
+   public int referenceSize()
+   {
+      return referenceSize;
+   }
+
+
+
+   // PRIVATE FUNCTIONS
+   private double update()
+   {
+      // Swap the references between the arrays.
+      final double[] tempCost = lastCost;
+      lastCost = currCost;
+      currCost = tempCost;
+      final long[] tempStart = lastStart;
+      lastStart = currStart;
+      currStart = tempStart;
+
+      final long t = numOfPoints++;
+
+      // A match of the first point of the reference may always start at the current point.
+      currCost[0] = kernel.calcDistance(0, 0);
+      currStart[0] = t;
+
+      for (int j=1; j<referenceSize; j++)
+      {
+         // (t,j) = LocalCost(t,j) + minGlobalCost{(t-1,j-1),(t-1,j),(t,j-1)}, ties favour the diagonal.
+         final double diagCost = lastCost[j-1];
+         final double leftCost = lastCost[j];
+         final double downCost = currCost[j-1];
+
+         if ((diagCost<=leftCost) && (diagCost<=downCost))
+         {
+            currCost[j] = diagCost;
+            currStart[j] = lastStart[j-1];
+         }
+         else if (leftCost <= downCost)
+         {
+            currCost[j] = leftCost;
+            currStart[j] = lastStart[j];
+         }
+         else
+         {
+            currCost[j] = downCost;
+            currStart[j] = currStart[j-1];
+         }  // end if
+
+         currCost[j] += kernel.calcDistance(0, j);
+      }  // end for loop
+
+      final double distance = currCost[referenceSize-1];
+      if (distance < bestDistance)
+      {
+         bestDistance = distance;
+         bestStart = currStart[referenceSize-1];
+         bestEnd = t;
+      }  // end if
+
+      return distance;
+   }  // end update()
+
+}  // end class StreamingDTW
@@ -0,0 +1,206 @@
+/*
+ * Wavefront.java
+ */
+
+package org.openmole.tool.dtw.dtw;
+
+import org.openmole.tool.dtw.timeseries.TimeSeries;
+import org.openmole.tool.dtw.util.DistanceFunction;
+import org.openmole.tool.dtw.util.DistanceKernel;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+
+// Fills a cost matrix, or the cells of a search window, either column by column or in parallel by anti-diagonal
+//    wavefronts of square tiles:
+//
+//   3|_|_|_|_|    each tile is filled column by column, bottom up, the tiles of an anti-diagonal
+//   2|2|3|_|_|       (same number) only depend on the tiles of the previous anti-diagonals and are
+//   1|1|2|3|_|       filled in parallel
+//   0|0|1|2|3|
+//     0 1 2 3
+//
+// Every cell only depends on its left, diagonal and lower neighbours which are always filled before it, so the
+//    costs are identical whatever the order.  A kernel wrapping a DistanceFunction is not thread safe, each tile gets
+//    its own distance kernel.
+abstract class Wavefront
+{
+   // CONSTANTS
+   private static final int MIN_TILE_SIZE = 16;
+   private static final int MAX_TILE_SIZE = 256;
+   private static final long MIN_PARALLEL_CELLS = 1L << 16;
+
+
+   // PRIVATE DATA
+   private final double[] valuesI;   // measurements of the time series, copied once for all the tiles
+   private final double[] valuesJ;
+   private final int dimsI;
+   private final int dimsJ;
+   private final DistanceFunction distFn;
+   private final int maxI;
+   private final int maxJ;
+   private final SearchWindow window;   // null for the full cost matrix
+
+
+
+   // CONSTRUCTOR
+   Wavefront(TimeSeries tsI, TimeSeries tsJ, DistanceFunction distFn, SearchWindow window)
+   {
+      this.valuesI = tsI.getMeasurements();
+      this.valuesJ = tsJ.getMeasurements();
+      this.dimsI = tsI.numOfDimensions();
+      this.dimsJ = tsJ.numOfDimensions();
+      this.distFn = distFn;
+      this.maxI = tsI.size()-1;
+      this.maxJ = tsJ.size()-1;
+      this.window = window;
+   }
+
+
+
+   // FUNCTIONS
+   //    Fills the cells (i, jFrom..jTo) bottom up, the cells of column i-1 and the cell (i, jFrom-1) are filled.
+   abstract void fillColumn(DistanceKernel kernel, int i, int jFrom, int jTo);
+
+
+   // Fills the cells in parallel in 'pool', or column by column if 'pool' is null or the problem is too small to be
+   //    worth splitting.
+   final void fill(ForkJoinPool pool)
+   {
+      final long cells = (window == null) ? (long)(maxI+1)*(maxJ+1) : window.size();
+      if ( (pool == null) || (pool.getParallelism() == 1) || (cells < MIN_PARALLEL_CELLS) )
+      {
+         final DistanceKernel kernel = newKernel();
+         for (int i=0; i<=maxI; i++)
+            fillColumn(kernel, i, minJforI(i), maxJforI(i));
+         return;
+      }  // end if
+
+      // Tiles small enough to keep every worker busy on an anti-diagonal of the window.
+      final int tileSize = (int)Math.max(MIN_TILE_SIZE,
+                                         Math.min(MAX_TILE_SIZE, cells/(maxI+1)/pool.getParallelism()));
+      final int numTileCols = maxI/tileSize+1;
+      final int numDiagonals = numTileCols+maxJ/tileSize;
+
+      // Sort the tiles that intersect the window by anti-diagonal: the column of the tiles of diagonal d are
+      //    tileCols[diagonalStarts[d]..diagonalStarts[d+1]-1].
+      final int[] lowTileRows = new int[numTileCols];
+      final int[] highTileRows = new int[numTileCols];
+      final int[] diagonalStarts = new int[numDiagonals+1];
+      for (int tileCol=0; tileCol<numTileCols; tileCol++)
+      {
+         int low = Integer.MAX_VALUE;
+         int high = -1;
+         for (int i=tileCol*tileSize; i<=Math.min(maxI, (tileCol+1)*tileSize-1); i++)
+         {
+            if (minJforI(i) <= maxJforI(i))
+            {
+               low = Math.min(low, minJforI(i)/tileSize);
+               high = Math.max(high, maxJforI(i)/tileSize);
+            }  // end if
+         }  // end for loop
+
+         lowTileRows[tileCol] = low;
+         highTileRows[tileCol] = high;
+         for (int tileRow=low; tileRow<=high; tileRow++)
+            diagonalStarts[tileCol+tileRow+1]++;
+      }  // end for loop
+
+      for (int d=0; d<numDiagonals; d++)
+         diagonalStarts[d+1] += diagonalStarts[d];
+
+      // Too few tiles per anti-diagonal (a narrow band) for the parallel fill to pay off.
+      if (diagonalStarts[numDiagonals] < 2*numDiagonals)
+      {
+         fill(null);
+         return;
+      }  // end if
+
+      final int[] tileCols = new int[diagonalStarts[numDiagonals]];
+      final int[] next = diagonalStarts.clone();
+      for (int tileCol=0; tileCol<numTileCols; tileCol++)
+         for (int tileRow=lowTileRows[tileCol]; tileRow<=highTileRows[tileCol]; tileRow++)
+            tileCols[next[tileCol+tileRow]++] = tileCol;
+
+      for (int d=0; d<numDiagonals; d++)
+      {
+         if (diagonalStarts[d+1]-diagonalStarts[d] == 1)
+            fillTile(tileCols[diagonalStarts[d]], d-tileCols[diagonalStarts[d]], tileSize);
+         else if (diagonalStarts[d+1] > diagonalStarts[d])
+            pool.invoke(new DiagonalTiles(tileCols, diagonalStarts[d], diagonalStarts[d+1], d, tileSize));
+      }  // end for loop
+   }  // end fill(.)
+
+
+
+   // PRIVATE FUNCTIONS
+   private void fillTile(int tileCol, int tileRow, int tileSize)
+   {
+      final DistanceKernel kernel = newKernel();
+      final int lowRow = tileRow*tileSize;
+      final int highRow = lowRow+tileSize-1;
+
+      for (int i=tileCol*tileSize; i<=Math.min(maxI, (tileCol+1)*tileSize-1); i++)
+      {
+         final int jFrom = Math.max(minJforI(i), lowRow);
+         final int jTo = Math.min(maxJforI(i), highRow);
+         if (jFrom <= jTo)
+            fillColumn(kernel, i, jFrom, jTo);
+      }  // end for loop
+   }  // end fillTile(...)
+
+
+   private DistanceKernel newKernel()
+   {
+      return DistanceKernel.getKernel(distFn, valuesI, dimsI, valuesJ, dimsJ);
+   }
+
+
+   private int minJforI(int i)
+   {
+      return (window == null) ? 0 : window.minJforI(i);
+   }
+
+
+   private int maxJforI(int i)
+   {
+      return (window == null) ? maxJ : window.maxJforI(i);
+   }
+
+
+
+   // The tiles tileCols[from..to-1] of an anti-diagonal, split in halves down to a single tile.
+   private final class DiagonalTiles extends RecursiveAction
+   {
+      private static final long serialVersionUID = 1L;
+
+      private final int[] tileCols;
+      private final int from;
+      private final int to;
+      private final int diagonal;
+      private final int tileSize;
+
+      private DiagonalTiles(int[] tileCols, int from, int to, int diagonal, int tileSize)
+      {
+         this.tileCols = tileCols;
+         this.from = from;
+         this.to = to;
+         this.diagonal = diagonal;
+         this.tileSize = tileSize;
+      }
+
+      protected void compute()
+      {
+         if (to-from > 1)
+         {
+            final int middle = (from+to) >>> 1;
+            invokeAll(new DiagonalTiles(tileCols, from, middle, diagonal, tileSize),
+                      new DiagonalTiles(tileCols, middle, to, diagonal, tileSize));
+         }
+         else
+            fillTile(tileCols[from], diagonal-tileCols[from], tileSize);
+      }  // end compute()
+   }  // end class DiagonalTiles
+
+}  // end class Wavefront
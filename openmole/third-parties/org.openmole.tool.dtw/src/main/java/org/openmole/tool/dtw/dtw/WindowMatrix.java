@@ -9,7 +9,7 @@ package org.openmole.tool.dtw.dtw;
 
 
 
-class WindowMatrix implements CostMatrix
+class WindowMatrix implements CostMatrix, AutoCloseable
 {
    // PRIVATE DATA
    private CostMatrix windowCells;
@@ -25,10 +25,10 @@ class WindowMatrix implements CostMatrix
       }
       catch (OutOfMemoryError e)
       {
-         System.err.println("Ran out of memory initializing window org.openmole.tool.dwt.matrix, all cells in the window cannot fit into " +
-                            "main memory.  Will use a swap file instead (will run ~50% slower)");
+         System.err.println("Ran out of memory initializing window matrix, all cells in the window cannot fit into " +
+                            "main memory.  Will use a memory-mapped swap file instead");
          System.gc();
-         windowCells = new SwapFileMatrix(searchWindow);
+         windowCells = new MappedFileMatrix(searchWindow);
       }  // end try
    }  // end Constructor
 
@@ -53,20 +53,11 @@ class WindowMatrix implements CostMatrix
    }
 
 
-   public void freeMem()
+   public void close()
    {
-      // Resources only need to be freed for a SwapFileMatrix.
-      if (windowCells instanceof SwapFileMatrix)
-      {
-         try
-         {
-            ((SwapFileMatrix)windowCells).freeMem();
-         }
-         catch (Throwable t)
-         {
-            // ignore the exception
-         }  // end try
-      }  // end if
-   }  // end freeMem()
+      // Resources only need to be freed for a MappedFileMatrix.
+      if (windowCells instanceof MappedFileMatrix)
+         ((MappedFileMatrix)windowCells).close();
+   }  // end close()
 
 }  // end WindowMatrix
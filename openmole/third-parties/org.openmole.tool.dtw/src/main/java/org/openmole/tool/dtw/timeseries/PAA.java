@@ -47,6 +47,8 @@ public class PAA extends TimeSeries
 
 
       // Keep averaging ranges of points into aggregate points until all of the data is averaged.
+      final int numOfDimensions = ts.numOfDimensions();
+      final double[] measurementSums = new double[numOfDimensions];
       while (ptToReadFrom < ts.size())
       {
          ptToReadTo = (int)Math.round(reducedPtSize*(this.size()+1))-1;   // determine end of current range
@@ -54,27 +56,26 @@ public class PAA extends TimeSeries
 
          // Keep track of the sum of all the values being averaged to create a single point.
          double timeSum = 0.0;
-         final double[] measurementSums = new double[ts.numOfDimensions()];
+         java.util.Arrays.fill(measurementSums, 0.0);
 
          // Sum all of the values over the range ptToReadFrom...ptToReadFrom.
          for (int pt=ptToReadFrom; pt<=ptToReadTo; pt++)
          {
-            final double[] currentPoint = ts.getMeasurementVector(pt);
-
             timeSum += ts.getTimeAtNthPoint(pt);
 
-            for (int dim=0; dim<ts.numOfDimensions(); dim++)
-               measurementSums[dim] += currentPoint[dim];
+            for (int dim=0; dim<numOfDimensions; dim++)
+               measurementSums[dim] += ts.getMeasurement(pt, dim);
          }  // end for loop
 
          // Determine the average value over the range ptToReadFrom...ptToReadFrom.
          timeSum = timeSum / ptsToRead;
-         for (int dim=0; dim<ts.numOfDimensions(); dim++)
+         for (int dim=0; dim<numOfDimensions; dim++)
                measurementSums[dim] = measurementSums[dim] / ptsToRead;   // find the average of each measurement
 
-         // Add the computed average value to the aggregate approximation.
+         // Add the computed average value to the aggregate approximation (the values are copied so the sums can
+         //    be reused for the next range).
          this.aggPtSize[super.size()] = ptsToRead;
-         this.addLast(timeSum, new TimeSeriesPoint(measurementSums));
+         this.addLast(timeSum, measurementSums);
 
          ptToReadFrom = ptToReadTo + 1;    // next window of points to average startw where the last window ended
       }  // end while loop
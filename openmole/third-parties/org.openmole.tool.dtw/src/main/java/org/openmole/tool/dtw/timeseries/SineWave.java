@@ -30,10 +30,12 @@ public class SineWave extends TimeSeries
 
      // final Random rand = new Random();
 
+      super.setMaxCapacity(length);
+      final double[] nextPoint = new double[1];   // the point is copied into the time series, so it can be reused
       for (int x=0; x<length; x++)
       {
-         final double nextPoint = Math.sin((double)x/length*2.0*Math.PI*cycles) + rand.nextGaussian()*noise;
-         super.addLast((int)x, new TimeSeriesPoint(new double[] {nextPoint}));
+         nextPoint[0] = Math.sin((double)x/length*2.0*Math.PI*cycles) + rand.nextGaussian()*noise;
+         super.addLast((int)x, nextPoint);
       }
    }
 
@@ -20,7 +20,6 @@ import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.FileOutputStream;
 import java.io.File;
-import java.util.concurrent.atomic.AtomicInteger;
 
 
 public class TimeSeries {
@@ -28,12 +27,14 @@ public class TimeSeries {
     private static final boolean DEFAULT_IS_TIME_1ST_COL = true;
     private static final char DEFAULT_DELIMITER = ',';
     private static final boolean DEFAULT_IS_LABELED = true;
+    private static final int DEFAULT_CAPACITY = 16;
 
 
     // PRIVATE DATA
     private final ArrayList labels;   // labels for each column
-    private final ArrayList timeReadings;        // ArrayList of Double
-    private final ArrayList tsArray;    // ArrayList of TimeSeriesPoint.. no time
+    private double[] timeReadings;    // time of each point, only the first 'size' entries are used
+    private double[] values;          // measurements, row-major: numOfDimensions() values per point.. no time
+    private int size;
 
 
     /**
@@ -41,27 +42,18 @@ public class TimeSeries {
      * ONLY ONE FIXED COLUMN
      */
     public TimeSeries(double[] x) {
-        // DS to create labels and values
-        AtomicInteger counter = new AtomicInteger();
-        TimeSeriesPoint tsValues;
-
         // Only one time series
-        timeReadings = new ArrayList();
-        ArrayList values;
-
-        // Each value is one incremented label
         labels = new ArrayList();
         labels.add("Time");
         labels.add("c1");
 
-        tsArray = new ArrayList();
-        for (double value : x) {
-            timeReadings.add((double) counter.getAndIncrement());
-            values = new ArrayList();
-            values.add(value);
-            tsValues = new TimeSeriesPoint(values);
-            tsArray.add(tsValues);
-        }
+        // Each value is read at one incremented time
+        timeReadings = new double[x.length];
+        for (int t = 0; t < x.length; t++)
+            timeReadings[t] = t;
+
+        values = x.clone();
+        size = x.length;
     }
 
     // TODO don't use defaults delimiter/1stColTime... determine if not specified
@@ -69,8 +61,9 @@ public class TimeSeries {
     // CONSTRUCTORS                                                                   // TODO method to peek at determined delimiter, 1st col time
     TimeSeries() {
         labels = new ArrayList();                                                      // TODO isLabeled constuctor options?
-        timeReadings = new ArrayList();
-        tsArray = new ArrayList();
+        timeReadings = new double[DEFAULT_CAPACITY];
+        values = new double[0];
+        size = 0;
     }
 
 
@@ -84,8 +77,9 @@ public class TimeSeries {
     // Copy Constructor
     public TimeSeries(TimeSeries origTS) {
         labels = new ArrayList(origTS.labels);
-        timeReadings = new ArrayList(origTS.timeReadings);
-        tsArray = new ArrayList(origTS.tsArray);
+        timeReadings = java.util.Arrays.copyOf(origTS.timeReadings, origTS.size);
+        values = java.util.Arrays.copyOf(origTS.values, origTS.size * origTS.numOfDimensions());
+        size = origTS.size;
     }
 
 
@@ -184,21 +178,21 @@ public class TimeSeries {
                     //                                      "expected:  " + (labels.size()+ignoredCol) + ", " +
                     //                                      "found: " + st.countTokens());
 
-                    // Read all currentLineValues in the current line
-                    final ArrayList currentLineValues = new ArrayList();
+                    // Read all currentLineValues in the current line.  Lines are not required to contain one
+                    //    value per label:  the values in excess are ignored and the missing ones are NaN.
+                    final double[] currentLineValues = new double[Math.max(st.countTokens(), labels.size())];
+                    java.util.Arrays.fill(currentLineValues, Double.NaN);
+                    int numOfValues = 0;
                     int currentCol = 0;
                     while (st.hasMoreTokens()) {
                         final String currentToken = st.nextToken();
                         if ((colToInclude.length == 0) || (Arrays.contains(colToInclude, currentCol))) {
-                            // Attempt to parse the next value to a Double value.
-                            final Double nextValue;
+                            // Attempt to parse the next value to a double value.
                             try {
-                                nextValue = Double.valueOf(currentToken);
+                                currentLineValues[numOfValues++] = Double.parseDouble(currentToken);
                             } catch (NumberFormatException e) {
                                 throw new InternalError("ERROR:  '" + currentToken + "' is not a valid number");
                             }
-
-                            currentLineValues.add(nextValue);
                         }  // end if
 
                         currentCol++;
@@ -206,19 +200,17 @@ public class TimeSeries {
 
                     // Update the private data with the current Row that has been
                     //    read.
-                    if (isFirstColTime)
-                        timeReadings.add(currentLineValues.get(0));
-                    else
-                        timeReadings.add(new Double(timeReadings.size()));
                     final int firstMeasurement;
                     if (isFirstColTime)
                         firstMeasurement = 1;
                     else
                         firstMeasurement = 0;
-                    final TimeSeriesPoint readings = new TimeSeriesPoint(currentLineValues.subList(firstMeasurement,
-                            currentLineValues.size()));
-                    tsArray.add(readings);
-//               timeValueMap.put(timeReadings.get(timeReadings.size()-1), readings);
+                    final double time;
+                    if (isFirstColTime)
+                        time = currentLineValues[0];
+                    else
+                        time = size;
+                    append(time, currentLineValues, firstMeasurement, numOfDimensions());
                 }  // end if
             }  // end while loop
             br.close();
@@ -340,15 +332,13 @@ public class TimeSeries {
         out.close();
     }
 
+    // Removes the points, the labels (and so the number of dimensions) are kept.
     public void clear() {
-        labels.clear();
-        timeReadings.clear();
-        tsArray.clear();
-        //     timeValueMap.clear();
+        size = 0;
     }
 
     public int size() {
-        return timeReadings.size();
+        return size;
     }
 
     public int numOfPts() {
@@ -360,7 +350,8 @@ public class TimeSeries {
     }
 
     public double getTimeAtNthPoint(int n) {
-        return ((Double) timeReadings.get(n)).doubleValue();
+        checkPointIndex(n);
+        return timeReadings[n];
     }
 
     public String getLabel(int index) {
@@ -379,19 +370,22 @@ public class TimeSeries {
     }
 
     public void setLabels(ArrayList newLabels) {
+        checkNumOfLabels(newLabels.size());
         labels.clear();
         for (int x = 0; x < newLabels.size(); x++)
             labels.add(newLabels.get(x));
     }
 
     public void setLabels(String[] newLabels) {
+        checkNumOfLabels(newLabels.length);
         labels.clear();
         for (int x = 0; x < newLabels.length; x++)
             labels.add(newLabels[x]);
     }
 
     public double getMeasurement(int pointIndex, int valueIndex) {
-        return ((TimeSeriesPoint) tsArray.get(pointIndex)).get(valueIndex);
+        checkPointIndex(pointIndex);
+        return values[pointIndex * numOfDimensions() + valueIndex];
     }
 
     public double getMeasurement(int pointIndex, String valueLabel) {
@@ -400,65 +394,90 @@ public class TimeSeries {
             throw new InternalError("ERROR:  the label '" + valueLabel + "' was " +
                     "not one of:  " + labels);
 
-        return ((TimeSeriesPoint) tsArray.get(pointIndex)).get(valueIndex - 1);
+        return getMeasurement(pointIndex, valueIndex - 1);
     }
 
+    // Returns a copy of the measurements of a point, prefer getMeasurementVector(int, double[]) or
+    //    getMeasurement(int, int) in loops to avoid allocating an array per call.
     public double[] getMeasurementVector(int pointIndex) {
-        return ((TimeSeriesPoint) tsArray.get(pointIndex)).toArray();
+        return getMeasurementVector(pointIndex, new double[numOfDimensions()]);
+    }
+
+    // Copies the measurements of a point into 'dest' (of length numOfDimensions()) and returns it.
+    public double[] getMeasurementVector(int pointIndex, double[] dest) {
+        checkPointIndex(pointIndex);
+        final int dims = numOfDimensions();
+        System.arraycopy(values, pointIndex * dims, dest, 0, dims);
+        return dest;
+    }
+
+    // Returns a copy of the measurements, row-major with numOfDimensions() values per point.  Call it once and index
+    //    the returned array rather than calling getMeasurement(int, int) in loops.
+    public double[] getMeasurements() {
+        return java.util.Arrays.copyOf(values, size * numOfDimensions());
+    }
+
+    // Copies the measurements into 'dest' (of length at least size()*numOfDimensions()) and returns it.
+    public double[] getMeasurements(double[] dest) {
+        System.arraycopy(values, 0, dest, 0, size * numOfDimensions());
+        return dest;
     }
 
     public void setMeasurement(int pointIndex, int valueIndex, double newValue) {
-        ((TimeSeriesPoint) tsArray.get(pointIndex)).set(valueIndex, newValue);
+        checkPointIndex(pointIndex);
+        values[pointIndex * numOfDimensions() + valueIndex] = newValue;
     }
 
     public void addFirst(double time, TimeSeriesPoint values) {
-        if (labels.size() != values.size() + 1)  // labels include a label for time
-            throw new InternalError("ERROR:  The TimeSeriesPoint: " + values +
-                    " contains the wrong number of values. " +
-                    "expected:  " + labels.size() + ", " +
-                    "found: " + values.size());
+        addFirst(time, values.toArray());
+    }  // end addFirst(..)
+
+    public void addFirst(double time, double[] measurements) {
+        checkNumOfValues(measurements, measurements.length);
 
-        if (time >= ((Double) timeReadings.get(0)).doubleValue())
+        if ((this.size() > 0) && (time >= timeReadings[0]))
             throw new InternalError("ERROR:  The point being inserted into the " +
                     "beginning of the time series does not have " +
                     "the correct time sequence. ");
 
-        timeReadings.add(0, new Double(time));
-        tsArray.add(0, values);
+        final int dims = numOfDimensions();
+        ensureCapacity(size + 1);
+        System.arraycopy(timeReadings, 0, timeReadings, 1, size);
+        System.arraycopy(values, 0, values, dims, size * dims);
+        timeReadings[0] = time;
+        System.arraycopy(measurements, 0, values, 0, dims);
+        size++;
     }  // end addFirst(..)
 
     public void addLast(double time, TimeSeriesPoint values) {
-        if (labels.size() != values.size() + 1)  // labels include a label for time
-            throw new InternalError("ERROR:  The TimeSeriesPoint: " + values +
-                    " contains the wrong number of values. " +
-                    "expected:  " + labels.size() + ", " +
-                    "found: " + values.size());
+        addLast(time, values.toArray());
+    }  // end addLast(..)
 
-        if ((this.size() > 0) && (time <= ((Double) timeReadings.get(timeReadings.size() - 1)).doubleValue()))
+    public void addLast(double time, double[] measurements) {
+        if ((this.size() > 0) && (time <= timeReadings[size - 1]))
             throw new InternalError("ERROR:  The point being inserted at the " +
                     "end of the time series does not have " +
                     "the correct time sequence. ");
 
-        timeReadings.add(new Double(time));
-        tsArray.add(values);
+        append(time, measurements, 0, measurements.length);
     }  // end addLast(..)
 
     public void removeFirst() {
         if (this.size() == 0)
             System.err.println("WARNING:  TimeSeriesPoint:removeFirst() called on an empty time series!");
         else {
-            timeReadings.remove(0);
-            tsArray.remove(0);
+            final int dims = numOfDimensions();
+            System.arraycopy(timeReadings, 1, timeReadings, 0, size - 1);
+            System.arraycopy(values, dims, values, 0, (size - 1) * dims);
+            size--;
         }  // end if
     }  // end removeFirst()
 
     public void removeLast() {
         if (this.size() == 0)
             System.err.println("WARNING:  TimeSeriesPoint:removeLast() called on an empty time series!");
-        else {
-            tsArray.remove(timeReadings.size() - 1);
-            timeReadings.remove(timeReadings.size() - 1);
-        }  // end if
+        else
+            size--;
     }  // end removeFirst()
 
     public void normalize() {
@@ -510,16 +529,15 @@ public class TimeSeries {
       }  // end for loop
 */
         // Write the data for each row.
-        for (int r = 0; r < timeReadings.size(); r++) {
+        for (int r = 0; r < size; r++) {
             // Time
-//         outStr.append(timeReadings.get(r).toString());
+//         outStr.append(timeReadings[r]);
 
             // The rest of the value on the row.
-            final TimeSeriesPoint values = (TimeSeriesPoint) tsArray.get(r);
-            for (int c = 0; c < values.size(); c++)
-                outStr.append(values.get(c));
+            for (int c = 0; c < numOfDimensions(); c++)
+                outStr.append(getMeasurement(r, c));
 
-            if (r < timeReadings.size() - 1)
+            if (r < size - 1)
                 outStr.append("\n");
         }  // end for loop
 
@@ -527,8 +545,48 @@ public class TimeSeries {
     }  // end toString()
 
     protected void setMaxCapacity(int capacity) {
-        this.timeReadings.ensureCapacity(capacity);
-        this.tsArray.ensureCapacity(capacity);
+        ensureCapacity(capacity);
+    }
+
+    // Appends a point without checking the time sequence, 'length' measurements are read from 'measurements'
+    //    starting at 'offset'.
+    protected void append(double time, double[] measurements, int offset, int length) {
+        checkNumOfValues(measurements, length);
+
+        final int dims = numOfDimensions();
+        ensureCapacity(size + 1);
+        timeReadings[size] = time;
+        System.arraycopy(measurements, offset, values, size * dims, dims);
+        size++;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (timeReadings.length < capacity)
+            timeReadings = java.util.Arrays.copyOf(timeReadings, Math.max(capacity, timeReadings.length * 2));
+
+        final int valuesCapacity = timeReadings.length * numOfDimensions();
+        if (values.length < valuesCapacity)
+            values = java.util.Arrays.copyOf(values, valuesCapacity);
+    }
+
+    private void checkNumOfValues(double[] measurements, int length) {
+        if (labels.size() != length + 1)  // labels include a label for time
+            throw new InternalError("ERROR:  The TimeSeriesPoint: " + new TimeSeriesPoint(measurements) +
+                    " contains the wrong number of values. " +
+                    "expected:  " + labels.size() + ", " +
+                    "found: " + length);
+    }
+
+    private void checkPointIndex(int pointIndex) {
+        if ((pointIndex < 0) || (pointIndex >= size))
+            throw new IndexOutOfBoundsException("Index: " + pointIndex + ", Size: " + size);
+    }
+
+    // The measurements are stored row-major, the number of dimensions can't change once points are stored.
+    private void checkNumOfLabels(int numOfLabels) {
+        if ((size > 0) && (numOfLabels != labels.size()))
+            throw new InternalError("ERROR:  The time series contains " + size + " points of " + numOfDimensions() +
+                    " dimensions, it can't be relabeled with " + numOfLabels + " labels.");
     }
 
 
@@ -0,0 +1,217 @@
+/*
+ * DistanceKernel.java
+ */
+
+package org.openmole.tool.dtw.util;
+
+
+// A DistanceKernel computes the distance between point i of a first series and point j of a second series directly
+//    from their primitive row-major measurement arrays (see TimeSeries.getMeasurements()), so no measurement vector
+//    has to be built for each cell of a cost matrix.  A kernel is bound to the arrays of one pair of time series and
+//    is picked once per warp by getKernel(..): EuclideanDistance, ManhattanDistance and BinaryDistance get
+//    specialised scalar and fixed-dimension kernels, any other DistanceFunction is wrapped in a kernel that reuses
+//    two scratch vectors.  Kernels wrapping a DistanceFunction are not thread safe.
+public abstract class DistanceKernel
+{
+   // PROTECTED DATA
+   protected final double[] valuesI;
+   protected final double[] valuesJ;
+
+
+   // CONSTRUCTOR
+   protected DistanceKernel(double[] valuesI, double[] valuesJ)
+   {
+      this.valuesI = valuesI;
+      this.valuesJ = valuesJ;
+   }
+
+
+   // PUBLIC FUNCTIONS
+   public abstract double calcDistance(int i, int j);
+
+
+   public static DistanceKernel getKernel(DistanceFunction distFn, double[] valuesI, int dimensionsI,
+                                          double[] valuesJ, int dimensionsJ)
+   {
+      if (dimensionsI != dimensionsJ)
+         throw new InternalError("ERROR:  cannot calculate the distance "
+                                 + "between vectors of different sizes.");
+
+      // Only the exact classes are specialised, a subclass may override calcDistance(..).
+      final Class<?> distFnClass = distFn.getClass();
+      if (distFnClass == EuclideanDistance.class)
+      {
+         if (dimensionsI == 1)
+            return new ScalarEuclideanKernel(valuesI, valuesJ);
+         else
+            return new EuclideanKernel(valuesI, valuesJ, dimensionsI);
+      }
+      else if (distFnClass == ManhattanDistance.class)
+      {
+         if (dimensionsI == 1)
+            return new ScalarManhattanKernel(valuesI, valuesJ);
+         else
+            return new ManhattanKernel(valuesI, valuesJ, dimensionsI);
+      }
+      else if (distFnClass == BinaryDistance.class)
+      {
+         if (dimensionsI == 1)
+            return new ScalarBinaryKernel(valuesI, valuesJ);
+         else
+            return new BinaryKernel(valuesI, valuesJ, dimensionsI);
+      }
+      else
+         return new FunctionKernel(distFn, valuesI, valuesJ, dimensionsI);
+   }  // end getKernel(..)
+
+
+
+   // PRIVATE CLASSES
+   //    For a single dimension the euclidean distance is the absolute difference (sqrt(d*d) == |d|).
+   private static final class ScalarEuclideanKernel extends DistanceKernel
+   {
+      private ScalarEuclideanKernel(double[] valuesI, double[] valuesJ)
+      {
+         super(valuesI, valuesJ);
+      }
+
+      public double calcDistance(int i, int j)
+      {
+         return Math.abs(valuesI[i]-valuesJ[j]);
+      }
+   }  // end class ScalarEuclideanKernel
+
+
+   private static final class EuclideanKernel extends DistanceKernel
+   {
+      private final int dimensions;
+
+      private EuclideanKernel(double[] valuesI, double[] valuesJ, int dimensions)
+      {
+         super(valuesI, valuesJ);
+         this.dimensions = dimensions;
+      }
+
+      public double calcDistance(int i, int j)
+      {
+         final int offsetI = i*dimensions;
+         final int offsetJ = j*dimensions;
+
+         double sqSum = 0.0;
+         for (int x=0; x<dimensions; x++)
+         {
+            final double diff = valuesI[offsetI+x]-valuesJ[offsetJ+x];
+            sqSum += diff*diff;
+         }
+
+         return Math.sqrt(sqSum);
+      }
+   }  // end class EuclideanKernel
+
+
+   private static final class ScalarManhattanKernel extends DistanceKernel
+   {
+      private ScalarManhattanKernel(double[] valuesI, double[] valuesJ)
+      {
+         super(valuesI, valuesJ);
+      }
+
+      public double calcDistance(int i, int j)
+      {
+         return Math.abs(valuesI[i]-valuesJ[j]);
+      }
+   }  // end class ScalarManhattanKernel
+
+
+   private static final class ManhattanKernel extends DistanceKernel
+   {
+      private final int dimensions;
+
+      private ManhattanKernel(double[] valuesI, double[] valuesJ, int dimensions)
+      {
+         super(valuesI, valuesJ);
+         this.dimensions = dimensions;
+      }
+
+      public double calcDistance(int i, int j)
+      {
+         final int offsetI = i*dimensions;
+         final int offsetJ = j*dimensions;
+
+         double diffSum = 0.0;
+         for (int x=0; x<dimensions; x++)
+            diffSum += Math.abs(valuesI[offsetI+x]-valuesJ[offsetJ+x]);
+
+         return diffSum;
+      }
+   }  // end class ManhattanKernel
+
+
+   //    Values are compared like java.util.Arrays.equals(double[], double[]) does in BinaryDistance.
+   private static final class ScalarBinaryKernel extends DistanceKernel
+   {
+      private ScalarBinaryKernel(double[] valuesI, double[] valuesJ)
+      {
+         super(valuesI, valuesJ);
+      }
+
+      public double calcDistance(int i, int j)
+      {
+         if (Double.doubleToLongBits(valuesI[i]) == Double.doubleToLongBits(valuesJ[j]))
+            return 0.0;
+         else
+            return 1.0;
+      }
+   }  // end class ScalarBinaryKernel
+
+
+   private static final class BinaryKernel extends DistanceKernel
+   {
+      private final int dimensions;
+
+      private BinaryKernel(double[] valuesI, double[] valuesJ, int dimensions)
+      {
+         super(valuesI, valuesJ);
+         this.dimensions = dimensions;
+      }
+
+      public double calcDistance(int i, int j)
+      {
+         final int offsetI = i*dimensions;
+         final int offsetJ = j*dimensions;
+
+         for (int x=0; x<dimensions; x++)
+            if (Double.doubleToLongBits(valuesI[offsetI+x]) != Double.doubleToLongBits(valuesJ[offsetJ+x]))
+               return 1.0;
+
+         return 0.0;
+      }
+   }  // end class BinaryKernel
+
+
+   //    Any other distance function, the measurement vectors are copied into scratch vectors.
+   private static final class FunctionKernel extends DistanceKernel
+   {
+      private final DistanceFunction distFn;
+      private final int dimensions;
+      private final double[] vectorI;
+      private final double[] vectorJ;
+
+      private FunctionKernel(DistanceFunction distFn, double[] valuesI, double[] valuesJ, int dimensions)
+      {
+         super(valuesI, valuesJ);
+         this.distFn = distFn;
+         this.dimensions = dimensions;
+         this.vectorI = new double[dimensions];
+         this.vectorJ = new double[dimensions];
+      }
+
+      public double calcDistance(int i, int j)
+      {
+         System.arraycopy(valuesI, i*dimensions, vectorI, 0, dimensions);
+         System.arraycopy(valuesJ, j*dimensions, vectorJ, 0, dimensions);
+         return distFn.calcDistance(vectorI, vectorJ);
+      }
+   }  // end class FunctionKernel
+
+}  // end class DistanceKernel
@@ -0,0 +1,39 @@
+package org.openmole.tool.dtw.dtw
+
+import org.openmole.tool.dtw.timeseries.TimeSeries
+import org.openmole.tool.dtw.util.DistanceFunctionFactory
+import org.scalatest._
+
+import scala.util.Random
+
+class DTWSpec extends flatspec.AnyFlatSpec with matchers.should.Matchers {
+
+  def randomPairs(n: Int) = {
+    val random = new Random(1)
+    def series = new TimeSeries(Array.fill(1 + random.nextInt(200))(random.nextGaussian()))
+    Seq.fill(n)((series, series))
+  }
+
+  val distanceFunctions = Seq(DistanceFunctionFactory.EUCLIDEAN_DIST_FN, DistanceFunctionFactory.MANHATTAN_DIST_FN)
+
+  "An early abandoning warp" should "return the distance when the best so far is the exact distance" in {
+    for {
+      (tsI, tsJ) ← randomPairs(2000)
+      distFn ← distanceFunctions
+    } {
+      val distance = DTW.getWarpDistBetween(tsI, tsJ, new FullWindow(tsI, tsJ), distFn)
+      DTW.getWarpDistBetween(tsI, tsJ, distFn, distance) should equal(distance)
+    }
+  }
+
+  it should "be abandoned when the best so far is below the distance" in {
+    for {
+      (tsI, tsJ) ← randomPairs(200)
+      distFn ← distanceFunctions
+    } {
+      val distance = DTW.getWarpDistBetween(tsI, tsJ, new FullWindow(tsI, tsJ), distFn)
+      DTW.getWarpDistBetween(tsI, tsJ, distFn, distance * 0.99) should equal(Double.PositiveInfinity)
+    }
+  }
+
+}
@@ -0,0 +1,57 @@
+package org.openmole.tool.dtw.dtw
+
+import org.openmole.tool.dtw.timeseries.TimeSeries
+import org.openmole.tool.dtw.util.DistanceFunctionFactory
+import org.scalatest._
+
+import scala.util.Random
+
+class DtwWorkspaceSpec extends flatspec.AnyFlatSpec with matchers.should.Matchers {
+
+  def series(random: Random, length: Int, dimensions: Int) = {
+    val ts = new TimeSeries(dimensions)
+    for (t ← 0 until length) ts.addLast(t, Array.fill(dimensions)(random.nextGaussian()))
+    ts
+  }
+
+  val distanceFunctions =
+    Seq(DistanceFunctionFactory.EUCLIDEAN_DIST_FN, DistanceFunctionFactory.MANHATTAN_DIST_FN, DistanceFunctionFactory.BINARY_DIST_FN)
+
+  val radii = Seq(0, 1, 2, 5, 10, 30)
+
+  "A workspace" should "compute the same distance as FastDTW" in {
+    val random = new Random(42)
+    // a single workspace, its buffers are reused across series of various lengths
+    val workspace = new DtwWorkspace
+
+    for {
+      _ ← 0 until 100
+      dimensions ← Seq(1, 3)
+      radius ← radii
+      distFn ← distanceFunctions
+    } {
+      val tsI = series(random, 1 + random.nextInt(400), dimensions)
+      val tsJ = series(random, 1 + random.nextInt(400), dimensions)
+
+      workspace.getWarpDistBetween(tsI, tsJ, radius, distFn) should equal(FastDTW.getWarpDistBetween(tsI, tsJ, radius, distFn))
+    }
+  }
+
+  it should "compute the same distance as FastDTW for arrays" in {
+    val random = new Random(7)
+    val workspace = new DtwWorkspace(100)
+
+    for {
+      _ ← 0 until 100
+      radius ← radii
+    } {
+      val seriesI = Array.fill(1 + random.nextInt(1000))(random.nextGaussian())
+      val seriesJ = Array.fill(1 + random.nextInt(1000))(random.nextGaussian())
+      val distFn = DistanceFunctionFactory.EUCLIDEAN_DIST_FN
+
+      workspace.getWarpDistBetween(seriesI, seriesJ, radius, distFn) should equal(
+        FastDTW.getWarpDistBetween(new TimeSeries(seriesI), new TimeSeries(seriesJ), radius, distFn))
+    }
+  }
+
+}
@@ -0,0 +1,66 @@
+package org.openmole.tool.dtw.dtw
+
+import org.openmole.tool.dtw.timeseries.TimeSeries
+import org.openmole.tool.dtw.util.DistanceFunctionFactory
+import org.scalatest._
+
+import scala.util.Random
+
+class StreamingDTWSpec extends flatspec.AnyFlatSpec with matchers.should.Matchers {
+
+  def series(points: Seq[Array[Double]], dimensions: Int) = {
+    val ts = new TimeSeries(dimensions)
+    for ((p, t) ← points.zipWithIndex) ts.addLast(t, p)
+    ts
+  }
+
+  "A streaming warp" should "find the best match of a brute force subsequence search" in {
+    val random = new Random(42)
+    val distFn = DistanceFunctionFactory.EUCLIDEAN_DIST_FN
+
+    for {
+      _ ← 0 until 20
+      dimensions ← Seq(1, 2)
+    } {
+      val reference = series(Seq.fill(1 + random.nextInt(8))(Array.fill(dimensions)(random.nextGaussian())), dimensions)
+      val stream = Seq.fill(1 + random.nextInt(40))(Array.fill(dimensions)(random.nextGaussian()))
+
+      def warp(start: Int, end: Int) = {
+        val subsequence = series(stream.slice(start, end + 1), dimensions)
+        DTW.getWarpDistBetween(reference, subsequence, new FullWindow(reference, subsequence), distFn)
+      }
+
+      val streaming = new StreamingDTW(reference, distFn)
+
+      for (end ← stream.indices) {
+        // distance of the best match ending at this point
+        streaming.addPoint(stream(end)) should equal((0 to end).map(warp(_, end)).min +- 1e-9)
+      }
+
+      // the first best match in the order of the ends
+      val (bestDistance, bestEnd, bestStart) =
+        (for { end ← stream.indices; start ← 0 to end } yield (warp(start, end), end, start)).minBy { case (d, e, _) ⇒ (d, e) }
+
+      streaming.getBestDistance should equal(bestDistance +- 1e-9)
+      streaming.getBestStart should equal(bestStart)
+      streaming.getBestEnd should equal(bestEnd)
+    }
+  }
+
+  it should "have no match before the first point" in {
+    val streaming = new StreamingDTW(new TimeSeries(Array(1.0, 2.0)), DistanceFunctionFactory.EUCLIDEAN_DIST_FN)
+    streaming.getBestDistance should equal(Double.PositiveInfinity)
+    streaming.getBestStart should equal(-1)
+    streaming.getBestEnd should equal(-1)
+  }
+
+  it should "reject points of the wrong number of dimensions" in {
+    val reference = series(Seq(Array(1.0, 2.0), Array(3.0, 4.0)), 2)
+    val streaming = new StreamingDTW(reference, DistanceFunctionFactory.EUCLIDEAN_DIST_FN)
+
+    an[InternalError] should be thrownBy streaming.addPoint(1.0)
+    an[InternalError] should be thrownBy streaming.addPoint(Array(1.0))
+    streaming.size should equal(0)
+  }
+
+}
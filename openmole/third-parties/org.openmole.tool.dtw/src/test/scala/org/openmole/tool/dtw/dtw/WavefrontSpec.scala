@@ -0,0 +1,64 @@
+package org.openmole.tool.dtw.dtw
+
+import java.util.concurrent.ForkJoinPool
+
+import org.openmole.tool.dtw.timeseries.TimeSeries
+import org.openmole.tool.dtw.util.DistanceFunctionFactory
+import org.scalatest._
+
+import scala.util.Random
+
+class WavefrontSpec extends flatspec.AnyFlatSpec with matchers.should.Matchers {
+
+  def series(random: Random, length: Int) = new TimeSeries(Array.fill(length)(random.nextGaussian()))
+
+  // the sizes are not multiples of the tile size and the warps are large enough to be filled in parallel
+  val sizes = Seq((517, 389), (389, 517), (1031, 613), (700, 700))
+
+  def inParallel[T](f: ForkJoinPool ⇒ T) = {
+    val pool = new ForkJoinPool(4)
+    try {
+      val result = f(pool)
+      // the pool is only used when the tiles are filled in parallel
+      pool.getPoolSize should be > 0
+      result
+    }
+    finally pool.shutdown()
+  }
+
+  def sameWarp(sequential: TimeWarpInfo, parallel: TimeWarpInfo) = {
+    parallel.getDistance should equal(sequential.getDistance)
+    parallel.getPath should equal(sequential.getPath)
+  }
+
+  "A parallel warp" should "be identical to the sequential warp" in {
+    val random = new Random(42)
+
+    for {
+      (sizeI, sizeJ) ← sizes
+      distFn ← Seq(DistanceFunctionFactory.EUCLIDEAN_DIST_FN, DistanceFunctionFactory.MANHATTAN_DIST_FN)
+    } {
+      val tsI = series(random, sizeI)
+      val tsJ = series(random, sizeJ)
+
+      sameWarp(DTW.getWarpInfoBetween(tsI, tsJ, distFn), inParallel(DTW.getWarpInfoBetween(tsI, tsJ, distFn, _)))
+    }
+  }
+
+  it should "be identical to the sequential warp in a constrained window" in {
+    val random = new Random(42)
+    val distFn = DistanceFunctionFactory.EUCLIDEAN_DIST_FN
+
+    for {
+      (sizeI, sizeJ) ← sizes
+    } {
+      val tsI = series(random, sizeI)
+      val tsJ = series(random, sizeJ)
+
+      for {
+        window ← Seq(new ParallelogramWindow(tsI, tsJ, 150), new LinearWindow(tsI, tsJ, 150))
+      } sameWarp(DTW.getWarpInfoBetween(tsI, tsJ, window, distFn), inParallel(DTW.getWarpInfoBetween(tsI, tsJ, window, distFn, _)))
+    }
+  }
+
+}
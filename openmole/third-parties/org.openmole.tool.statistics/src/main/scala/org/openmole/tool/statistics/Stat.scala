@@ -63,7 +63,16 @@ trait Stat {
   def squareDistance(v1: Seq[Double], v2: Seq[Double]): Double =
     (v1 zip v2).map { case (v1v, v2v) ⇒ math.pow(v1v - v2v, 2) }.sum
 
-  def dynamicTimeWarpingDistance(v1: Seq[Double], v2: Seq[Double], fast: Boolean = true): Double = {
+  /** FastDTW buffers reused by the successive distance computations of a thread */
+  private lazy val dtwWorkspace = ThreadLocal.withInitial[org.openmole.tool.dtw.dtw.DtwWorkspace](() ⇒ new org.openmole.tool.dtw.dtw.DtwWorkspace)
+
+  /**
+   * Compute the dynamic time warping distance between two series.
+   *
+   * @param bestSoFar when finite the computation is abandoned, and PositiveInfinity returned, as soon as the distance
+   *                  is certain to be greater than bestSoFar (nearest pattern search, rejection)
+   */
+  def dynamicTimeWarpingDistance(v1: Seq[Double], v2: Seq[Double], fast: Boolean = true, bestSoFar: Double = Double.PositiveInfinity): Double = {
     import org.openmole.tool.dtw.timeseries.TimeSeries
     import org.openmole.tool.dtw.util.DistanceFunctionFactory
 
@@ -71,8 +80,12 @@ trait Stat {
     val tb = new TimeSeries(v2.toArray)
     val df = DistanceFunctionFactory.EUCLIDEAN_DIST_FN
 
-    if (fast) org.openmole.tool.dtw.dtw.FastDTW.getWarpDistBetween(ta, tb, df)
-    else org.openmole.tool.dtw.dtw.DTW.getWarpDistBetween(ta, tb, df)
+    (fast, bestSoFar.isPosInfinity) match {
+      case (true, true)   ⇒ dtwWorkspace.get.getWarpDistBetween(ta, tb, df)
+      case (true, false)  ⇒ org.openmole.tool.dtw.dtw.FastDTW.getWarpDistBetween(ta, tb, df, bestSoFar)
+      case (false, true)  ⇒ org.openmole.tool.dtw.dtw.DTW.getWarpDistBetween(ta, tb, df)
+      case (false, false) ⇒ org.openmole.tool.dtw.dtw.DTW.getWarpDistBetween(ta, tb, df, bestSoFar)
+    }
   }
 
   /**